@@ -0,0 +1,343 @@
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Running statistics for a group of students
+ *
+ * Instead of looping over every student each time statistics are shown,
+ * we keep running totals and update them whenever a student is added,
+ * changed or removed. Showing the report then takes the same time no
+ * matter how big the class is.
+ *
+ * For the top and lowest students we keep one linked list of students per
+ * possible total (0 to 100). The best student is at the front of the
+ * highest non-empty list, and the top k students are the first k met
+ * walking down the lists. Removing someone just unlinks them, so the
+ * ordering survives deletes without ever sorting.
+ *
+ * Scores can only be 0 to 50, so we also keep a count of how many students
+ * have each exam score, each assessment score and each total (a counting
+ * histogram). Percentiles and "what percentile is this student" are then
+ * answered by walking at most 101 counters instead of sorting the class.
+ *
+ * Concepts covered:
+ * - Incremental (running) aggregates
+ * - Bucketing values that live in a small fixed range
+ * - Doubly linked lists for constant time removal
+ * - Counting histograms, percentiles and percentile ranks
+ */
+class ClassStats {
+
+    static final int MAX_SCORE = 50;
+    static final int MAX_TOTAL = 100;
+
+    int count = 0;
+    long totalExam = 0;
+    long totalAssessment = 0;
+    long totalFees = 0;
+    int passCount = 0;
+    int certificateCount = 0;
+
+    // How many students have each score. examCounts[30] is the number of
+    // students who scored exactly 30 in the exam.
+    final int[] examCounts = new int[MAX_SCORE + 1];
+    final int[] assessmentCounts = new int[MAX_SCORE + 1];
+    final int[] totalCounts = new int[MAX_TOTAL + 1];
+
+    // One list per total score, ordered by when the student was recorded
+    private final Node[] heads = new Node[MAX_TOTAL + 1];
+    private final Node[] tails = new Node[MAX_TOTAL + 1];
+
+    /**
+     * A students entry in the statistics. It remembers the values that
+     * were counted so they can be taken back out exactly, even after the
+     * Student object itself has been edited.
+     */
+    static class Node {
+        final Student student;
+        final int exam;
+        final int assessment;
+        final int fees;
+        final boolean passed;
+        final boolean certificate;
+        Node prev;
+        Node next;
+
+        Node(Student student) {
+            this.student = student;
+            this.exam = student.examScore;
+            this.assessment = student.assessmentScore;
+            this.fees = student.feesPaid;
+            this.passed = student.hasPassed();
+            this.certificate = student.getCertificate();
+        }
+
+        int total() {
+            return exam + assessment;
+        }
+    }
+
+    /**
+     * Counts a student. Keep the returned node to remove them later.
+     */
+    Node add(Student student) {
+        Node node = new Node(student);
+        count++;
+        totalExam += node.exam;
+        totalAssessment += node.assessment;
+        totalFees += node.fees;
+        if (node.passed) {
+            passCount++;
+        }
+        if (node.certificate) {
+            certificateCount++;
+        }
+        examCounts[node.exam]++;
+        assessmentCounts[node.assessment]++;
+
+        int total = node.total();
+        totalCounts[total]++;
+        node.prev = tails[total];
+        if (tails[total] != null) {
+            tails[total].next = node;
+        } else {
+            heads[total] = node;
+        }
+        tails[total] = node;
+        return node;
+    }
+
+    /**
+     * Takes a previously counted student back out
+     */
+    void remove(Node node) {
+        count--;
+        totalExam -= node.exam;
+        totalAssessment -= node.assessment;
+        totalFees -= node.fees;
+        if (node.passed) {
+            passCount--;
+        }
+        if (node.certificate) {
+            certificateCount--;
+        }
+        examCounts[node.exam]--;
+        assessmentCounts[node.assessment]--;
+
+        int total = node.total();
+        totalCounts[total]--;
+        if (node.prev != null) {
+            node.prev.next = node.next;
+        } else {
+            heads[total] = node.next;
+        }
+        if (node.next != null) {
+            node.next.prev = node.prev;
+        } else {
+            tails[total] = node.prev;
+        }
+        node.prev = null;
+        node.next = null;
+    }
+
+    void clear() {
+        count = 0;
+        totalExam = 0;
+        totalAssessment = 0;
+        totalFees = 0;
+        passCount = 0;
+        certificateCount = 0;
+        java.util.Arrays.fill(heads, null);
+        java.util.Arrays.fill(tails, null);
+        java.util.Arrays.fill(examCounts, 0);
+        java.util.Arrays.fill(assessmentCounts, 0);
+        java.util.Arrays.fill(totalCounts, 0);
+    }
+
+    /**
+     * Adds another groups counts and histograms to these ones. Only the
+     * numbers are merged; the top/lowest lists stay with their own group.
+     */
+    void addCounts(ClassStats other) {
+        count += other.count;
+        totalExam += other.totalExam;
+        totalAssessment += other.totalAssessment;
+        totalFees += other.totalFees;
+        passCount += other.passCount;
+        certificateCount += other.certificateCount;
+        for (int score = 0; score <= MAX_SCORE; score++) {
+            examCounts[score] += other.examCounts[score];
+            assessmentCounts[score] += other.assessmentCounts[score];
+        }
+        for (int t = 0; t <= MAX_TOTAL; t++) {
+            totalCounts[t] += other.totalCounts[t];
+        }
+    }
+
+    int failCount() {
+        return count - passCount;
+    }
+
+    /**
+     * Student with the highest total, or null if empty
+     */
+    Node top() {
+        for (int t = MAX_TOTAL; t >= 0; t--) {
+            if (heads[t] != null) {
+                return heads[t];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Student with the lowest total, or null if empty
+     */
+    Node lowest() {
+        for (int t = 0; t <= MAX_TOTAL; t++) {
+            if (heads[t] != null) {
+                return heads[t];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * The k students with the highest totals, best first. Walks the
+     * lists from total 100 down and stops after k students, so it costs
+     * at most 101 steps plus k, however big the class is. Students on the
+     * same total are in the order they were recorded.
+     */
+    List<Node> top(int k) {
+        List<Node> result = new ArrayList<>(Math.min(k, count));
+        for (int t = MAX_TOTAL; t >= 0 && result.size() < k; t--) {
+            for (Node n = heads[t]; n != null && result.size() < k; n = n.next) {
+                result.add(n);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The k students with the lowest totals, lowest first
+     */
+    List<Node> bottom(int k) {
+        List<Node> result = new ArrayList<>(Math.min(k, count));
+        for (int t = 0; t <= MAX_TOTAL && result.size() < k; t++) {
+            for (Node n = heads[t]; n != null && result.size() < k; n = n.next) {
+                result.add(n);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * The score that p percent of students are at or below (nearest rank
+     * method), read from one of the histograms above. For example
+     * percentile(examCounts, 50) is the median exam score. Returns -1 if
+     * there are no students.
+     */
+    int percentile(int[] counts, double p) {
+        if (count == 0) {
+            return -1;
+        }
+        // The rank'th lowest score, counting from 1
+        long rank = (long) Math.ceil(p / 100.0 * count);
+        rank = Math.max(1, Math.min(count, rank));
+
+        long seen = 0;
+        for (int score = 0; score < counts.length; score++) {
+            seen += counts[score];
+            if (seen >= rank) {
+                return score;
+            }
+        }
+        return counts.length - 1;
+    }
+
+    /**
+     * Percentile rank of a score: the percentage of students who scored
+     * below it, counting those on exactly the same score as half below
+     * and half above
+     */
+    double percentileRank(int[] counts, int score) {
+        if (count == 0) {
+            return 0;
+        }
+        long below = 0;
+        for (int s = 0; s < score; s++) {
+            below += counts[s];
+        }
+        return (below + counts[score] / 2.0) * 100.0 / count;
+    }
+
+    /**
+     * Position in the class by total score, 1 being the best. Students on
+     * the same total share a position.
+     */
+    int position(int total) {
+        int above = 0;
+        for (int t = MAX_TOTAL; t > total; t--) {
+            above += totalCounts[t];
+        }
+        return above + 1;
+    }
+
+    /**
+     * Recomputes everything from scratch and compares it with the running
+     * numbers. Returns a description of each difference found, so an empty
+     * list means the incremental statistics are correct.
+     */
+    List<String> verify(List<Student> students) {
+        ClassStats fresh = new ClassStats();
+        int staleStatus = 0;
+        for (Student s : students) {
+            fresh.add(s);
+            if (s.statusCode != Student.computeStatus(s.examScore, s.assessmentScore, s.feesPaid, s.cohort)) {
+                staleStatus++;
+            }
+        }
+
+        List<String> problems = new ArrayList<>();
+        compare(problems, "students with an out of date status", staleStatus, 0);
+        compare(problems, "student count", count, fresh.count);
+        compare(problems, "exam total", totalExam, fresh.totalExam);
+        compare(problems, "assessment total", totalAssessment, fresh.totalAssessment);
+        compare(problems, "fees total", totalFees, fresh.totalFees);
+        compare(problems, "pass count", passCount, fresh.passCount);
+        compare(problems, "certificate count", certificateCount, fresh.certificateCount);
+
+        // Ties can be broken differently, so compare the totals not the names
+        Node top = top();
+        Node freshTop = fresh.top();
+        compare(problems, "top total", top == null ? -1 : top.total(), freshTop == null ? -1 : freshTop.total());
+        Node low = lowest();
+        Node freshLow = fresh.lowest();
+        compare(problems, "lowest total", low == null ? -1 : low.total(), freshLow == null ? -1 : freshLow.total());
+
+        // Every bucket should hold exactly the students with that total
+        for (int t = 0; t <= MAX_TOTAL; t++) {
+            compare(problems, "students with total " + t, bucketSize(t), fresh.bucketSize(t));
+            compare(problems, "total histogram at " + t, totalCounts[t], fresh.totalCounts[t]);
+        }
+        for (int score = 0; score <= MAX_SCORE; score++) {
+            compare(problems, "exam histogram at " + score, examCounts[score], fresh.examCounts[score]);
+            compare(problems, "assessment histogram at " + score, assessmentCounts[score], fresh.assessmentCounts[score]);
+        }
+        return problems;
+    }
+
+    int bucketSize(int total) {
+        int n = 0;
+        for (Node node = heads[total]; node != null; node = node.next) {
+            n++;
+        }
+        return n;
+    }
+
+    private static void compare(List<String> problems, String what, long running, long recomputed) {
+        if (running != recomputed) {
+            problems.add(what + ": running " + running + ", recomputed " + recomputed);
+        }
+    }
+}
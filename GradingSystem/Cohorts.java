@@ -0,0 +1,236 @@
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Students grouped by cohort (class, year group, course...)
+ *
+ * Each cohort keeps its own member list and its own running statistics
+ * (a ClassStats), updated whenever one of its students is added, changed
+ * or removed, exactly like the whole class statistics. Cohort names are
+ * matched ignoring case, and students without a cohort are grouped
+ * together under the empty name.
+ *
+ * The full cohort report recomputes every cohorts figures from its member
+ * list. The cohorts dont depend on each other, so the work is split over
+ * the fork/join pool: a task with too many cohorts splits itself in half,
+ * runs one half on another core and does the other half itself.
+ *
+ * Concepts covered:
+ * - Partitioning a collection into groups
+ * - Keeping per-group aggregates up to date
+ * - Divide and conquer with RecursiveTask
+ */
+class Cohorts {
+
+    static final String NO_COHORT_LABEL = "(no cohort)";
+
+    // A task with at most this many students does its cohorts itself
+    // instead of splitting further
+    static final int SPLIT_THRESHOLD = 20_000;
+
+    /**
+     * One cohort and its running statistics
+     */
+    static class Cohort {
+        final String key;
+        String name; // As first entered
+        final ArrayList<Student> members = new ArrayList<>();
+        final ClassStats stats = new ClassStats();
+
+        Cohort(String key, String name) {
+            this.key = key;
+            this.name = name;
+        }
+
+        String label() {
+            return name.isEmpty() ? NO_COHORT_LABEL : name;
+        }
+    }
+
+    /**
+     * One line of the cohort report, worked out from the member list
+     */
+    static class Report {
+        String name;
+        int count;
+        double averageExam;
+        double averageAssessment;
+        double passRate;
+        int certificates;
+        int medianTotal;
+        int p90Total;
+        Student top;
+        ClassStats stats; // The freshly computed statistics
+    }
+
+    private final HashMap<String, Cohort> cohorts = new HashMap<>();
+
+    static String key(String cohort) {
+        return cohort.toLowerCase(Locale.ROOT);
+    }
+
+    Cohort get(String cohort) {
+        return cohorts.get(key(cohort));
+    }
+
+    Collection<Cohort> all() {
+        return cohorts.values();
+    }
+
+    int size() {
+        return cohorts.size();
+    }
+
+    /**
+     * Puts a student into the cohort named by student.cohort, creating
+     * the cohort if needed
+     */
+    void add(Student student) {
+        String key = key(student.cohort);
+        Cohort cohort = cohorts.get(key);
+        if (cohort == null) {
+            cohort = new Cohort(key, student.cohort);
+            cohorts.put(key, cohort);
+        }
+        student.cohortGroup = cohort;
+        student.cohortSlot = cohort.members.size();
+        cohort.members.add(student);
+        student.cohortNode = cohort.stats.add(student);
+    }
+
+    /**
+     * Takes a student out of their cohort. An empty cohort disappears.
+     */
+    void remove(Student student) {
+        Cohort cohort = student.cohortGroup;
+        if (cohort == null) {
+            return;
+        }
+        cohort.stats.remove(student.cohortNode);
+
+        // Same swap-with-last trick as GradingSystem.removeStudent
+        Student last = cohort.members.remove(cohort.members.size() - 1);
+        if (last != student) {
+            cohort.members.set(student.cohortSlot, last);
+            last.cohortSlot = student.cohortSlot;
+        }
+        if (cohort.members.isEmpty()) {
+            cohorts.remove(cohort.key);
+        }
+        student.cohortGroup = null;
+        student.cohortNode = null;
+        student.cohortSlot = -1;
+    }
+
+    /**
+     * Called after a students scores, fees or cohort changed
+     */
+    void update(Student student) {
+        Cohort cohort = student.cohortGroup;
+        if (cohort == null || !cohort.key.equals(key(student.cohort))) {
+            remove(student);
+            add(student);
+        } else {
+            cohort.stats.remove(student.cohortNode);
+            student.cohortNode = cohort.stats.add(student);
+        }
+    }
+
+    void clear() {
+        cohorts.clear();
+    }
+
+    /**
+     * Rebuilds every cohorts statistics, after the students have all been
+     * regraded
+     */
+    void restat() {
+        for (Cohort cohort : cohorts.values()) {
+            cohort.stats.clear();
+            for (Student s : cohort.members) {
+                s.cohortNode = cohort.stats.add(s);
+            }
+        }
+    }
+
+    /**
+     * Works out a report line for every cohort, in parallel
+     */
+    List<Report> report() {
+        Cohort[] list = cohorts.values().toArray(new Cohort[0]);
+        return ForkJoinPool.commonPool().invoke(new ReportTask(list, 0, list.length));
+    }
+
+    /**
+     * Recomputes one cohorts figures with a pass over its members
+     */
+    static Report compute(Cohort cohort) {
+        ClassStats stats = new ClassStats();
+        for (Student s : cohort.members) {
+            stats.add(s);
+        }
+
+        Report report = new Report();
+        report.name = cohort.label();
+        report.count = stats.count;
+        report.stats = stats;
+        if (stats.count > 0) {
+            report.averageExam = (double) stats.totalExam / stats.count;
+            report.averageAssessment = (double) stats.totalAssessment / stats.count;
+            report.passRate = stats.passCount * 100.0 / stats.count;
+            report.certificates = stats.certificateCount;
+            report.medianTotal = stats.percentile(stats.totalCounts, 50);
+            report.p90Total = stats.percentile(stats.totalCounts, 90);
+            report.top = stats.top().student;
+        }
+        return report;
+    }
+
+    /**
+     * Reports on cohorts[from..to). Splits in half while the range holds
+     * more than SPLIT_THRESHOLD students and more than one cohort.
+     */
+    static class ReportTask extends RecursiveTask<List<Report>> {
+        private static final long serialVersionUID = 1L;
+
+        private final Cohort[] cohorts;
+        private final int from;
+        private final int to;
+
+        ReportTask(Cohort[] cohorts, int from, int to) {
+            this.cohorts = cohorts;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected List<Report> compute() {
+            long students = 0;
+            for (int i = from; i < to; i++) {
+                students += cohorts[i].members.size();
+            }
+
+            if (to - from <= 1 || students <= SPLIT_THRESHOLD) {
+                List<Report> reports = new ArrayList<>(to - from);
+                for (int i = from; i < to; i++) {
+                    reports.add(Cohorts.compute(cohorts[i]));
+                }
+                return reports;
+            }
+
+            int middle = (from + to) >>> 1;
+            ReportTask left = new ReportTask(cohorts, from, middle);
+            ReportTask right = new ReportTask(cohorts, middle, to);
+            left.fork(); // Someone else can pick this half up
+            List<Report> reports = right.compute();
+            List<Report> leftReports = left.join();
+            leftReports.addAll(reports);
+            return leftReports;
+        }
+    }
+}
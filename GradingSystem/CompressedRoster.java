@@ -0,0 +1,553 @@
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RecursiveTask;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed roster text files, picked by the end of the file name
+ *
+ * - students.txt.gz is ordinary gzip. On load, one thread decompresses
+ *   while the main thread parses, handing buffers over through a small
+ *   queue, so the two jobs overlap instead of taking turns.
+ * - students.txt.bgz is "block gzip". The text is cut into blocks of
+ *   about 1 MB, each ending at the end of a line, and every block is
+ *   compressed on its own as a complete gzip member. Each member records
+ *   its compressed size in the gzip header (an "extra field"), so a
+ *   reader can hop from block to block without decompressing anything
+ *   and give different blocks to different cores. A file of gzip members
+ *   one after another is still a normal gzip file, so gunzip and zcat
+ *   can read it too. A line is never split between blocks, so a line
+ *   longer than BLOCK_SIZE gets a bigger block of its own, up to
+ *   MAX_BLOCK_SIZE. The writer refuses longer lines and the reader
+ *   rejects bigger blocks, so everything written can be read back.
+ *
+ * Concepts covered:
+ * - Streaming compression with java.util.zip
+ * - Pipelining two stages with a blocking queue
+ * - A file format designed for parallel reading
+ */
+class CompressedRoster {
+
+    // Uncompressed bytes per block in a .bgz file
+    static final int BLOCK_SIZE = 1024 * 1024;
+
+    // The biggest block allowed, for a single line longer than BLOCK_SIZE
+    static final int MAX_BLOCK_SIZE = 16 * BLOCK_SIZE;
+
+    // Deflate cant shrink data by more than about 1032 to 1, so a block
+    // claiming more text than this per compressed byte is damaged
+    static final int MAX_DEFLATE_RATIO = 1032;
+
+    // Buffer size and number of buffers in flight between the
+    // decompressing thread and the parser
+    static final int PIPE_CHUNK = 64 * 1024;
+    static final int PIPE_DEPTH = 8;
+
+    // Blocks decompressed at once by a parallel load. Keeps memory use
+    // bounded however big the file is.
+    static final int BLOCKS_IN_FLIGHT = 64;
+
+    // gzip header with an extra field holding our block size:
+    // ID1 ID2 CM FLG, MTIME (4), XFL, OS, XLEN (2), then the subfield
+    // 'G' 'B', its length (2) and the member size (4)
+    static final int HEADER_SIZE = 20;
+    private static final int FEXTRA = 4;
+    private static final byte SUBFIELD_1 = 'G';
+    private static final byte SUBFIELD_2 = 'B';
+
+    static boolean isGzip(String filename) {
+        return filename.toLowerCase(java.util.Locale.ROOT).endsWith(".gz");
+    }
+
+    static boolean isBlockGzip(String filename) {
+        return filename.toLowerCase(java.util.Locale.ROOT).endsWith(".bgz");
+    }
+
+    static boolean isCompressed(String filename) {
+        return isGzip(filename) || isBlockGzip(filename);
+    }
+
+    /**
+     * Opens a file for writing, compressing it if the name asks for it
+     */
+    static OutputStream openForWrite(String filename) throws IOException {
+        OutputStream out = new FileOutputStream(filename);
+        if (isBlockGzip(filename)) {
+            return new BlockGzipOutputStream(out);
+        }
+        if (isGzip(filename)) {
+            return new GZIPOutputStream(out, PIPE_CHUNK);
+        }
+        return out;
+    }
+
+    /**
+     * Opens a file for reading. Compressed files (either kind) are
+     * decompressed on a second thread as they are read.
+     */
+    static InputStream openForRead(Path path) throws IOException {
+        InputStream in = Files.newInputStream(path);
+        if (isCompressed(path.toString())) {
+            return new PipelinedInputStream(new GZIPInputStream(in, PIPE_CHUNK));
+        }
+        return in;
+    }
+
+    /**
+     * Loads a .gz roster, decompressing and parsing at the same time
+     */
+    static RosterParser.Result loadGzip(Path path, RosterParser.Sink sink) throws IOException {
+        try (InputStream in = openForRead(path)) {
+            return RosterParser.parse(in, sink);
+        }
+    }
+
+    // ---------------------------------------------------------------
+    // Pipelined reading
+    // ---------------------------------------------------------------
+
+    /**
+     * Reads another stream on a background thread, a buffer ahead of
+     * whoever reads from this one. Used buffers are handed back to the
+     * background thread so none are allocated after the first few.
+     */
+    static class PipelinedInputStream extends InputStream {
+
+        private static class Chunk {
+            final byte[] data = new byte[PIPE_CHUNK];
+            int length; // -1 marks the end of the stream
+        }
+
+        private final BlockingQueue<Chunk> full = new ArrayBlockingQueue<>(PIPE_DEPTH);
+        private final BlockingQueue<Chunk> empty = new ArrayBlockingQueue<>(PIPE_DEPTH + 1);
+        private final Thread reader;
+        private volatile IOException error;
+
+        private Chunk current;
+        private int position;
+        private boolean finished;
+
+        PipelinedInputStream(InputStream source) {
+            for (int i = 0; i <= PIPE_DEPTH; i++) {
+                empty.add(new Chunk());
+            }
+            reader = new Thread(() -> fill(source), "roster-decompress");
+            reader.setDaemon(true);
+            reader.start();
+        }
+
+        private void fill(InputStream source) {
+            try (InputStream in = source) {
+                while (true) {
+                    Chunk chunk = empty.take();
+                    int n = in.readNBytes(chunk.data, 0, chunk.data.length);
+                    chunk.length = n == 0 ? -1 : n;
+                    full.put(chunk);
+                    if (n == 0) {
+                        return;
+                    }
+                }
+            } catch (IOException e) {
+                error = e;
+                endOfStream();
+            } catch (InterruptedException e) {
+                // Closed early, nobody is reading any more
+            }
+        }
+
+        private void endOfStream() {
+            Chunk end = new Chunk();
+            end.length = -1;
+            try {
+                full.put(end);
+            } catch (InterruptedException e) {
+                // Closed early
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (current == null || position == current.length) {
+                if (finished) {
+                    return -1;
+                }
+                if (current != null) {
+                    empty.add(current); // Hand it back for refilling
+                    current = null;
+                }
+                try {
+                    Chunk next = full.take();
+                    if (next.length < 0) {
+                        finished = true;
+                        if (error != null) {
+                            throw error;
+                        }
+                        return -1;
+                    }
+                    current = next;
+                    position = 0;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException("Interrupted while reading", e);
+                }
+            }
+            int n = Math.min(len, current.length - position);
+            System.arraycopy(current.data, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) < 0 ? -1 : one[0] & 0xFF;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.interrupt();
+            try {
+                reader.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    // ---------------------------------------------------------------
+    // Block gzip
+    // ---------------------------------------------------------------
+
+    /**
+     * Writes block gzip: collects text until a block is full, then
+     * compresses everything up to the last newline as one gzip member
+     */
+    static class BlockGzipOutputStream extends OutputStream {
+        private final OutputStream out;
+        private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        private final CRC32 crc = new CRC32();
+        private byte[] buffer = new byte[BLOCK_SIZE];
+        private int count = 0;
+        private byte[] compressed = new byte[BLOCK_SIZE / 2];
+
+        BlockGzipOutputStream(OutputStream out) {
+            this.out = out;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (count == buffer.length) {
+                writeBlock(false);
+            }
+            buffer[count++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            while (len > 0) {
+                if (count == buffer.length) {
+                    writeBlock(false);
+                }
+                int n = Math.min(len, buffer.length - count);
+                System.arraycopy(b, off, buffer, count, n);
+                count += n;
+                off += n;
+                len -= n;
+            }
+        }
+
+        /**
+         * Compresses the buffer up to its last newline (or all of it at
+         * the end of the file) and keeps the rest for the next block
+         */
+        private void writeBlock(boolean last) throws IOException {
+            int cut = count;
+            if (!last) {
+                while (cut > 0 && buffer[cut - 1] != '\n') {
+                    cut--;
+                }
+                if (cut == 0) {
+                    // One line longer than a block: let the block grow
+                    // rather than split the line, up to the biggest block
+                    // the reader accepts
+                    if (buffer.length >= MAX_BLOCK_SIZE) {
+                        throw new IOException("a line is longer than " + MAX_BLOCK_SIZE
+                                + " bytes, too long for a .bgz block");
+                    }
+                    buffer = java.util.Arrays.copyOf(buffer, Math.min(buffer.length * 2, MAX_BLOCK_SIZE));
+                    return;
+                }
+            }
+
+            deflater.reset();
+            deflater.setInput(buffer, 0, cut);
+            deflater.finish();
+            int size = 0;
+            while (!deflater.finished()) {
+                if (size == compressed.length) {
+                    compressed = java.util.Arrays.copyOf(compressed, compressed.length * 2);
+                }
+                size += deflater.deflate(compressed, size, compressed.length - size);
+            }
+            crc.reset();
+            crc.update(buffer, 0, cut);
+
+            int memberSize = HEADER_SIZE + size + 8;
+            byte[] header = {
+                    0x1f, (byte) 0x8b, 8, FEXTRA, 0, 0, 0, 0, 0, (byte) 255,
+                    8, 0, SUBFIELD_1, SUBFIELD_2, 4, 0, 0, 0, 0, 0 };
+            putInt(header, 16, memberSize);
+            out.write(header);
+            out.write(compressed, 0, size);
+            byte[] trailer = new byte[8];
+            putInt(trailer, 0, (int) crc.getValue());
+            putInt(trailer, 4, cut);
+            out.write(trailer);
+
+            count -= cut;
+            System.arraycopy(buffer, cut, buffer, 0, count);
+            if (buffer.length > BLOCK_SIZE && count <= BLOCK_SIZE) {
+                // Back to normal blocks once the long line has gone out
+                buffer = java.util.Arrays.copyOf(buffer, BLOCK_SIZE);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            out.flush();
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                if (count > 0) {
+                    writeBlock(true);
+                }
+                out.close();
+            } finally {
+                deflater.end();
+            }
+        }
+    }
+
+    /**
+     * Loads a .bgz roster. The block sizes in the headers tell us where
+     * every block starts; the blocks are then decompressed and parsed on
+     * the fork/join pool, a window at a time, and added to the roster in
+     * file order. A plain gzip file named .bgz is loaded the ordinary way.
+     */
+    static RosterParser.Result loadBlocks(Path path, RosterParser.Sink sink) throws IOException {
+        long start = System.nanoTime();
+        RosterParser.Result total = new RosterParser.Result();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            List<long[]> blocks = findBlocks(channel, path);
+            if (blocks == null) {
+                return loadGzip(path, sink);
+            }
+
+            for (int from = 0; from < blocks.size(); from += BLOCKS_IN_FLIGHT) {
+                int to = Math.min(blocks.size(), from + BLOCKS_IN_FLIGHT);
+                List<BlockTask> tasks = new ArrayList<>();
+                for (int i = from; i < to; i++) {
+                    BlockTask task = new BlockTask(channel, blocks.get(i)[0], (int) blocks.get(i)[1]);
+                    task.fork();
+                    tasks.add(task);
+                }
+                for (BlockTask task : tasks) {
+                    ParallelRosterImport.merge(task.join(), sink, total);
+                }
+            }
+        }
+
+        total.nanos = System.nanoTime() - start;
+        return total;
+    }
+
+    /**
+     * Walks the member headers and returns { offset, size } for every
+     * block, or null if the file doesnt start with a block gzip header
+     */
+    static List<long[]> findBlocks(FileChannel channel, Path path) throws IOException {
+        List<long[]> blocks = new ArrayList<>();
+        long size = channel.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        long at = 0;
+
+        while (at < size) {
+            header.clear();
+            while (header.hasRemaining() && channel.read(header, at + header.position()) > 0) {
+                // Keep reading until the header is complete
+            }
+            byte[] h = header.array();
+            boolean ours = header.position() == HEADER_SIZE
+                    && (h[0] & 0xFF) == 0x1f && (h[1] & 0xFF) == 0x8b && h[2] == 8 && h[3] == FEXTRA
+                    && h[10] == 8 && h[11] == 0 && h[12] == SUBFIELD_1 && h[13] == SUBFIELD_2;
+            if (!ours) {
+                if (at == 0) {
+                    return null;
+                }
+                throw new IOException(path + ": damaged block at byte " + at);
+            }
+            int memberSize = getInt(h, 16);
+            if (memberSize < HEADER_SIZE + 8 || at + memberSize > size) {
+                throw new IOException(path + ": damaged block at byte " + at);
+            }
+            blocks.add(new long[] { at, memberSize });
+            at += memberSize;
+        }
+        return blocks;
+    }
+
+    /**
+     * Reads, decompresses, checks and parses one block
+     */
+    static class BlockTask extends RecursiveTask<ParallelRosterImport.ChunkResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long offset;
+        private final int size;
+
+        BlockTask(FileChannel channel, long offset, int size) {
+            this.channel = channel;
+            this.offset = offset;
+            this.size = size;
+        }
+
+        @Override
+        protected ParallelRosterImport.ChunkResult compute() {
+            ParallelRosterImport.ChunkResult chunk = new ParallelRosterImport.ChunkResult();
+            Inflater inflater = new Inflater(true);
+            try {
+                ByteBuffer buf = ByteBuffer.allocate(size);
+                while (buf.hasRemaining()) {
+                    if (channel.read(buf, offset + buf.position()) < 0) {
+                        throw new IOException("block at byte " + offset + " is cut short");
+                    }
+                }
+                byte[] member = buf.array();
+                int expectedCrc = getInt(member, size - 8);
+                int length = getInt(member, size - 4);
+                // The length comes from the file, so check it before
+                // allocating: the writer never makes a block bigger than
+                // MAX_BLOCK_SIZE, and deflate cant have shrunk it more
+                // than MAX_DEFLATE_RATIO times
+                long mostText = (long) (size - HEADER_SIZE - 8) * MAX_DEFLATE_RATIO;
+                if (length < 0 || length > MAX_BLOCK_SIZE || length > mostText) {
+                    throw new IOException("block at byte " + offset + " claims " + length + " bytes of text");
+                }
+
+                byte[] text = new byte[length];
+                inflater.setInput(member, HEADER_SIZE, size - HEADER_SIZE);
+                int filled = 0;
+                while (filled < length && !inflater.finished()) {
+                    int n = inflater.inflate(text, filled, length - filled);
+                    if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                        break;
+                    }
+                    filled += n;
+                }
+                CRC32 crc = new CRC32();
+                crc.update(text, 0, filled);
+                if (filled != length || (int) crc.getValue() != expectedCrc) {
+                    throw new IOException("block at byte " + offset + " failed its checksum");
+                }
+                ParallelRosterImport.parseLines(text, length, chunk);
+            } catch (IOException e) {
+                chunk.error = e;
+            } catch (DataFormatException e) {
+                chunk.error = new IOException("block at byte " + offset + " is damaged: " + e.getMessage());
+            } finally {
+                inflater.end();
+            }
+            return chunk;
+        }
+    }
+
+    /**
+     * Checks that block gzip reads back what it writes, including a line
+     * longer than a block among ordinary ones, and that a line too long
+     * for any block is refused when writing. Run with --check-compression.
+     * Returns true if everything came back.
+     */
+    static boolean selfCheck() {
+        System.out.println("\n--- Compression check ---");
+        int rows = 200_000;
+        int longName = BLOCK_SIZE + BLOCK_SIZE / 5;
+        try {
+            Path file = Files.createTempFile("check", ".bgz");
+            try {
+                try (OutputStream out = openForWrite(file.toString())) {
+                    out.write(("STU0|" + "x".repeat(longName) + "|40|30|100\n").getBytes(StandardCharsets.UTF_8));
+                    for (int i = 1; i <= rows; i++) {
+                        out.write(("STU" + i + "|Student " + i + "|" + (i % 51) + "|" + (i % 47) + "|" + (i % 101)
+                                + "\n").getBytes(StandardCharsets.UTF_8));
+                    }
+                }
+                int[] longNames = { 0 };
+                RosterParser.Result blocks = loadBlocks(file, s -> {
+                    if (s.name.length() == longName) {
+                        longNames[0]++;
+                    }
+                    return true;
+                });
+                RosterParser.Result plain = loadGzip(file, s -> true);
+                boolean ok = blocks.loaded == rows + 1 && longNames[0] == 1 && plain.loaded == rows + 1;
+                System.out.println("Oversized line: " + blocks.loaded + " students read back in blocks, "
+                        + plain.loaded + " as plain gzip" + (ok ? "" : " (expected " + (rows + 1) + ")"));
+
+                // One line longer than the biggest block must be refused
+                boolean refused = false;
+                try (OutputStream out = openForWrite(file.toString())) {
+                    out.write(new byte[MAX_BLOCK_SIZE + 1]);
+                } catch (IOException e) {
+                    refused = true;
+                }
+                System.out.println("Line longer than " + MAX_BLOCK_SIZE + " bytes: "
+                        + (refused ? "refused" : "NOT refused"));
+                ok &= refused;
+
+                System.out.println(ok ? "Compression check passed." : "Compression check FAILED.");
+                return ok;
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        } catch (IOException e) {
+            System.out.println("Compression check FAILED: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // gzip stores numbers little endian
+    private static void putInt(byte[] b, int at, int value) {
+        b[at] = (byte) value;
+        b[at + 1] = (byte) (value >>> 8);
+        b[at + 2] = (byte) (value >>> 16);
+        b[at + 3] = (byte) (value >>> 24);
+    }
+
+    private static int getInt(byte[] b, int at) {
+        return (b[at] & 0xFF) | (b[at + 1] & 0xFF) << 8 | (b[at + 2] & 0xFF) << 16 | (b[at + 3] & 0xFF) << 24;
+    }
+}
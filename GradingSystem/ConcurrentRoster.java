@@ -0,0 +1,323 @@
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Thread safe roster for when several graders work at the same time
+ *
+ * One lock for the whole roster would make every grader wait for every
+ * other one. Instead the students are spread over 64 "stripes" by a hash
+ * of their ID. Each stripe has its own lock, its own map and its own
+ * running statistics, so two graders only wait for each other when their
+ * students happen to land in the same stripe.
+ *
+ * Students stored here are never edited in place. A change builds a new
+ * Student and swaps it in, so a list handed out by snapshot() can be read
+ * safely after the locks are released.
+ *
+ * A snapshot takes every stripe lock (always in the same order, so it can
+ * never deadlock with another snapshot), which gives a view of the roster
+ * as it was at one moment: the counts, totals and students always agree
+ * with each other.
+ *
+ * Concepts covered:
+ * - Lock striping
+ * - Immutable values shared between threads
+ * - Consistent snapshots by taking every lock in a fixed order
+ */
+class ConcurrentRoster {
+
+    static final int STRIPES = 64;
+
+    /**
+     * A change to one student, applied while their stripe is locked.
+     * Return the new record, or null to leave the student as they are.
+     */
+    interface Change {
+        Student apply(Student current);
+    }
+
+    /**
+     * The roster as it was at one moment
+     */
+    static class Snapshot {
+        final ClassStats stats = new ClassStats(); // Counts and histograms only
+        Student top;
+        Student lowest;
+        ArrayList<Student> students; // Only filled in when asked for
+    }
+
+    /**
+     * One slice of the roster and the lock that guards it
+     */
+    private static class Stripe {
+        final ReentrantLock lock = new ReentrantLock();
+        final HashMap<String, Student> students = new HashMap<>();
+        final ClassStats stats = new ClassStats();
+    }
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+
+    // Optional journal and the snapshot file it is compacted into
+    private final RosterJournal journal;
+    private final Path snapshotFile;
+    private final int compactAfter;
+
+    /**
+     * Roster kept only in memory
+     */
+    ConcurrentRoster(List<Student> initial) {
+        this(initial, null, null, 0);
+    }
+
+    /**
+     * Roster that journals every change and writes a fresh snapshot after
+     * compactAfter changes
+     */
+    ConcurrentRoster(List<Student> initial, RosterJournal journal, Path snapshotFile, int compactAfter) {
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe();
+        }
+        for (Student s : initial) {
+            Stripe stripe = stripeFor(s.id);
+            Student copy = new Student(s.id, s.name, s.examScore, s.assessmentScore, s.feesPaid, s.cohort);
+            if (stripe.students.putIfAbsent(key(s.id), copy) == null) {
+                copy.statsNode = stripe.stats.add(copy);
+            }
+        }
+        this.journal = journal;
+        this.snapshotFile = snapshotFile;
+        this.compactAfter = compactAfter;
+    }
+
+    private static String key(String id) {
+        return id.toLowerCase(Locale.ROOT);
+    }
+
+    private Stripe stripeFor(String id) {
+        int h = key(id).hashCode();
+        h ^= h >>> 16; // Mix the high bits in, since only the low bits pick the stripe
+        return stripes[h & (STRIPES - 1)];
+    }
+
+    Student get(String id) {
+        Stripe stripe = stripeFor(id);
+        stripe.lock.lock();
+        try {
+            return stripe.students.get(key(id));
+        } finally {
+            stripe.lock.unlock();
+        }
+    }
+
+    /**
+     * Adds a student. Returns false if the ID is already taken.
+     */
+    boolean add(Student student) throws IOException {
+        Stripe stripe = stripeFor(student.id);
+        stripe.lock.lock();
+        try {
+            if (stripe.students.putIfAbsent(key(student.id), student) != null) {
+                return false;
+            }
+            student.statsNode = stripe.stats.add(student);
+            log(RosterJournal.OP_ADD, student);
+        } finally {
+            stripe.lock.unlock();
+        }
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+     * Reads, changes and replaces one student as a single step, so two
+     * graders editing the same student cant lose each others changes.
+     * Returns the new record, or null if the student doesnt exist or the
+     * change was skipped.
+     */
+    Student change(String id, Change change) throws IOException {
+        Stripe stripe = stripeFor(id);
+        Student updated;
+        stripe.lock.lock();
+        try {
+            Student current = stripe.students.get(key(id));
+            if (current == null) {
+                return null;
+            }
+            updated = change.apply(current);
+            if (updated == null) {
+                return null;
+            }
+            stripe.stats.remove(current.statsNode);
+            updated.statsNode = stripe.stats.add(updated);
+            stripe.students.put(key(id), updated);
+            log(RosterJournal.OP_UPDATE, updated);
+        } finally {
+            stripe.lock.unlock();
+        }
+        compactIfNeeded();
+        return updated;
+    }
+
+    /**
+     * Removes a student. Returns the removed record, or null if there was
+     * no such student.
+     */
+    Student remove(String id) throws IOException {
+        Stripe stripe = stripeFor(id);
+        Student removed;
+        stripe.lock.lock();
+        try {
+            removed = stripe.students.remove(key(id));
+            if (removed == null) {
+                return null;
+            }
+            stripe.stats.remove(removed.statsNode);
+            log(RosterJournal.OP_DELETE, removed);
+        } finally {
+            stripe.lock.unlock();
+        }
+        compactIfNeeded();
+        return removed;
+    }
+
+    /**
+     * Statistics (and optionally every student) as they were at one moment
+     */
+    Snapshot snapshot(boolean withStudents) {
+        Snapshot snap = new Snapshot();
+        lockAll();
+        try {
+            if (withStudents) {
+                snap.students = new ArrayList<>(size());
+            }
+            ClassStats.Node top = null;
+            ClassStats.Node lowest = null;
+            for (Stripe stripe : stripes) {
+                snap.stats.addCounts(stripe.stats);
+                ClassStats.Node t = stripe.stats.top();
+                if (t != null && (top == null || t.total() > top.total())) {
+                    top = t;
+                }
+                ClassStats.Node l = stripe.stats.lowest();
+                if (l != null && (lowest == null || l.total() < lowest.total())) {
+                    lowest = l;
+                }
+                if (withStudents) {
+                    snap.students.addAll(stripe.students.values());
+                }
+            }
+            snap.top = top == null ? null : top.student;
+            snap.lowest = lowest == null ? null : lowest.student;
+        } finally {
+            unlockAll();
+        }
+        return snap;
+    }
+
+    /**
+     * Number of students. Only call this while holding every lock, or
+     * when no other thread is changing the roster.
+     */
+    private int size() {
+        int n = 0;
+        for (Stripe stripe : stripes) {
+            n += stripe.students.size();
+        }
+        return n;
+    }
+
+    /**
+     * Checks every stripes running statistics against a full recompute.
+     * An empty list means they are all correct.
+     */
+    List<String> verify() {
+        List<String> problems = new ArrayList<>();
+        lockAll();
+        try {
+            for (int i = 0; i < STRIPES; i++) {
+                for (String problem : stripes[i].stats.verify(new ArrayList<>(stripes[i].students.values()))) {
+                    problems.add("stripe " + i + ": " + problem);
+                }
+            }
+        } finally {
+            unlockAll();
+        }
+        return problems;
+    }
+
+    private void lockAll() {
+        for (Stripe stripe : stripes) {
+            stripe.lock.lock();
+        }
+    }
+
+    private void unlockAll() {
+        for (int i = STRIPES - 1; i >= 0; i--) {
+            stripes[i].lock.unlock();
+        }
+    }
+
+    /**
+     * Journals one change. Called with the students stripe locked, so the
+     * changes to any one student reach the journal in the order they
+     * happened.
+     */
+    private void log(byte op, Student student) throws IOException {
+        if (journal == null) {
+            return;
+        }
+        synchronized (journal) {
+            if (op == RosterJournal.OP_DELETE) {
+                journal.logDelete(student.id);
+            } else if (op == RosterJournal.OP_ADD) {
+                journal.logAdd(student);
+            } else {
+                journal.logUpdate(student);
+            }
+        }
+    }
+
+    private void compactIfNeeded() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        synchronized (journal) {
+            if (journal.records() < compactAfter) {
+                return;
+            }
+        }
+        compact();
+    }
+
+    /**
+     * Writes every student to the snapshot file and empties the journal.
+     * Every stripe is locked meanwhile, so no change can slip in between.
+     */
+    void compact() throws IOException {
+        if (journal == null) {
+            return;
+        }
+        lockAll();
+        try {
+            synchronized (journal) {
+                // Another grader may have compacted while we waited
+                if (journal.records() == 0) {
+                    return;
+                }
+                ArrayList<Student> all = new ArrayList<>(size());
+                for (Stripe stripe : stripes) {
+                    all.addAll(stripe.students.values());
+                }
+                RosterSnapshot.save(snapshotFile, all);
+                journal.truncate();
+            }
+        } finally {
+            unlockAll();
+        }
+    }
+}
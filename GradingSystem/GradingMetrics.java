@@ -0,0 +1,255 @@
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Built in performance metrics
+ *
+ * Each timed operation (load, save, search...) keeps a few counters and a
+ * latency histogram. Recording is a handful of additions with no locks
+ * and no objects created, so the metrics can stay on all the time.
+ *
+ * The histogram works like HdrHistogram: the time in nanoseconds is put in
+ * a bucket by its highest set bit (which power of two it falls in), and
+ * that range is split into 32 equal slices. Every bucket is therefore
+ * within about 3% of the real value, whether an operation took 200
+ * nanoseconds or 20 seconds, using about 1,200 counters.
+ *
+ * The same numbers can be read from a JMX console (jconsole, VisualVM)
+ * under GradingSystem:type=Operation.
+ *
+ * Concepts covered:
+ * - Low overhead counters (LongAdder)
+ * - Log linear histograms and percentiles from buckets
+ * - Publishing management beans with JMX
+ */
+public class GradingMetrics {
+
+    // Slices per power of two: 2^5 = 32, about 3% precision
+    static final int SUB_BUCKET_BITS = 5;
+    static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    // Powers of two covered; 2^40 ns is about 18 minutes, longer times
+    // are counted in the last bucket
+    static final int MAGNITUDES = 36;
+
+    static final Operation LOAD = new Operation("load");
+    static final Operation SAVE = new Operation("save");
+    static final Operation SEARCH = new Operation("search");
+    static final Operation STATISTICS = new Operation("statistics");
+    static final Operation INGEST = new Operation("ingest");
+
+    static final Operation[] ALL = { LOAD, SAVE, SEARCH, STATISTICS, INGEST };
+
+    /**
+     * What JMX shows for each operation. Times are in milliseconds.
+     */
+    public interface OperationMBean {
+        long getCount();
+
+        long getErrors();
+
+        long getRecords();
+
+        long getBytes();
+
+        double getMeanMillis();
+
+        double getP50Millis();
+
+        double getP90Millis();
+
+        double getP99Millis();
+
+        double getMaxMillis();
+
+        void reset();
+    }
+
+    /**
+     * Counters and latency histogram for one kind of operation
+     */
+    public static class Operation implements OperationMBean {
+        final String name;
+        private final LongAdder count = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder records = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LongAccumulator maxNanos = new LongAccumulator(Math::max, 0);
+        private final AtomicLongArray histogram = new AtomicLongArray((MAGNITUDES + 1) * SUB_BUCKETS);
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        /**
+         * Records one successful run, how many records it handled and how
+         * many bytes it read or wrote
+         */
+        void record(long nanos, long recordCount, long byteCount) {
+            time(nanos);
+            records.add(recordCount);
+            bytes.add(byteCount);
+        }
+
+        /**
+         * Records a run that failed. It still counts towards the latency.
+         */
+        void failed(long nanos) {
+            time(nanos);
+            errors.increment();
+        }
+
+        private void time(long nanos) {
+            nanos = Math.max(0, nanos);
+            count.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulate(nanos);
+            histogram.incrementAndGet(bucket(nanos));
+        }
+
+        /**
+         * Time below which p percent of the runs finished, in nanoseconds.
+         * This is the middle of the bucket the percentile falls in.
+         */
+        long percentile(double p) {
+            long total = 0;
+            for (int i = 0; i < histogram.length(); i++) {
+                total += histogram.get(i);
+            }
+            if (total == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(p / 100.0 * total));
+            long seen = 0;
+            for (int i = 0; i < histogram.length(); i++) {
+                seen += histogram.get(i);
+                if (seen >= rank) {
+                    return Math.min(middleOf(i), maxNanos.get());
+                }
+            }
+            return maxNanos.get();
+        }
+
+        @Override
+        public long getCount() {
+            return count.sum();
+        }
+
+        @Override
+        public long getErrors() {
+            return errors.sum();
+        }
+
+        @Override
+        public long getRecords() {
+            return records.sum();
+        }
+
+        @Override
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        @Override
+        public double getMeanMillis() {
+            long n = count.sum();
+            return n == 0 ? 0 : totalNanos.sum() / 1_000_000.0 / n;
+        }
+
+        @Override
+        public double getP50Millis() {
+            return percentile(50) / 1_000_000.0;
+        }
+
+        @Override
+        public double getP90Millis() {
+            return percentile(90) / 1_000_000.0;
+        }
+
+        @Override
+        public double getP99Millis() {
+            return percentile(99) / 1_000_000.0;
+        }
+
+        @Override
+        public double getMaxMillis() {
+            return maxNanos.get() / 1_000_000.0;
+        }
+
+        @Override
+        public void reset() {
+            count.reset();
+            errors.reset();
+            records.reset();
+            bytes.reset();
+            totalNanos.reset();
+            maxNanos.reset();
+            for (int i = 0; i < histogram.length(); i++) {
+                histogram.set(i, 0);
+            }
+        }
+    }
+
+    /**
+     * Bucket for a time. Values under 32 get a bucket each; above that,
+     * the highest set bit picks the power of two and the next 5 bits pick
+     * the slice within it.
+     */
+    static int bucket(long value) {
+        if (value < SUB_BUCKETS) {
+            return (int) value;
+        }
+        int magnitude = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS + 1;
+        if (magnitude > MAGNITUDES) {
+            return (MAGNITUDES + 1) * SUB_BUCKETS - 1;
+        }
+        int slice = (int) (value >>> (magnitude - 1)) & (SUB_BUCKETS - 1);
+        return magnitude * SUB_BUCKETS + slice;
+    }
+
+    /**
+     * The smallest time that lands in a bucket
+     */
+    static long lowestIn(int bucket) {
+        int magnitude = bucket / SUB_BUCKETS;
+        int slice = bucket % SUB_BUCKETS;
+        if (magnitude == 0) {
+            return slice;
+        }
+        return (long) (SUB_BUCKETS + slice) << (magnitude - 1);
+    }
+
+    static long middleOf(int bucket) {
+        int magnitude = bucket / SUB_BUCKETS;
+        long width = magnitude == 0 ? 1 : 1L << (magnitude - 1);
+        return lowestIn(bucket) + width / 2;
+    }
+
+    /**
+     * Publishes every operation as a JMX bean. Failing to do so only
+     * means the numbers cant be read from outside, so it is not fatal.
+     */
+    static void registerMBeans() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            for (Operation op : ALL) {
+                ObjectName name = new ObjectName("GradingSystem:type=Operation,name=" + op.name);
+                if (!server.isRegistered(name)) {
+                    server.registerMBean(op, name);
+                }
+            }
+        } catch (JMException e) {
+            System.out.println("Metrics not available over JMX: " + e.getMessage());
+        }
+    }
+
+    static String formatMillis(double ms) {
+        return ms >= 100 ? String.format("%.0f", ms) : String.format("%.3f", ms);
+    }
+}
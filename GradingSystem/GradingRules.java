@@ -0,0 +1,342 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Grading rules that can be changed without recompiling
+ *
+ * The pass marks, the fee needed for a certificate and the condoned
+ * passes are read from a rules file (grading.rules):
+ *
+ *   # Lines are "setting = value", # starts a comment
+ *   exam_pass_mark = 25
+ *   assessment_pass_mark = 15
+ *   full_fee = 100
+ *   # Condoned passes as exam/assessment, either side can be a range
+ *   condone = 25/14
+ *   condone = 24/15
+ *
+ *   # A cohort can change any of the settings for its own students
+ *   [cohort 2024-A]
+ *   exam_pass_mark = 30
+ *   condone = none
+ *
+ * Exam and assessment scores are both 0 to 50, so there are only 51 x 51
+ * possible pairs. When the rules are loaded, every pair is graded once
+ * and the answer stored in a table. Grading a student is then a single
+ * array read, however many rules there are.
+ *
+ * Concepts covered:
+ * - Reading a simple configuration file
+ * - Precomputing a lookup table (compiling rules into data)
+ * - Fork/join for splitting a big loop over every core
+ */
+class GradingRules {
+
+    static final int SCORES = GradingSystem.MAX_SCORE + 1;
+
+    // Students per piece when regrading in parallel
+    static final int REGRADE_THRESHOLD = 50_000;
+
+    int examPassMark;
+    int assessmentPassMark;
+    int fullFee;
+
+    // Condoned windows as { examLow, examHigh, assessmentLow, assessmentHigh }
+    final List<int[]> condoneWindows = new ArrayList<>();
+
+    // Status bits (without the certificate) for every exam/assessment pair
+    private final byte[] table = new byte[SCORES * SCORES];
+
+    /**
+     * The rules built into the program (the GradingSystem constants)
+     */
+    static GradingRules standard() {
+        GradingRules rules = new GradingRules();
+        rules.examPassMark = GradingSystem.EXAM_PASS_MARK;
+        rules.assessmentPassMark = GradingSystem.ASSESSMENT_PASS_MARK;
+        rules.fullFee = GradingSystem.FULL_FEE;
+        rules.condoneWindows.add(new int[] { 25, 25, 14, 14 });
+        rules.condoneWindows.add(new int[] { 24, 24, 15, 15 });
+        rules.compile();
+        return rules;
+    }
+
+    private GradingRules copy() {
+        GradingRules rules = new GradingRules();
+        rules.examPassMark = examPassMark;
+        rules.assessmentPassMark = assessmentPassMark;
+        rules.fullFee = fullFee;
+        rules.condoneWindows.addAll(condoneWindows);
+        return rules;
+    }
+
+    /**
+     * Grades every possible exam/assessment pair and stores the answers
+     */
+    void compile() {
+        for (int exam = 0; exam < SCORES; exam++) {
+            for (int assessment = 0; assessment < SCORES; assessment++) {
+                int code = 0;
+                if (exam >= examPassMark) {
+                    code |= Student.PASSED_EXAM;
+                }
+                if (assessment >= assessmentPassMark) {
+                    code |= Student.PASSED_ASSESSMENT;
+                }
+                boolean condoned = false;
+                for (int[] w : condoneWindows) {
+                    if (exam >= w[0] && exam <= w[1] && assessment >= w[2] && assessment <= w[3]) {
+                        condoned = true;
+                    }
+                }
+                if (condoned) {
+                    code |= Student.CONDONED;
+                }
+                boolean passedBoth = (code & Student.PASSED_EXAM) != 0 && (code & Student.PASSED_ASSESSMENT) != 0;
+                if (passedBoth || condoned) {
+                    code |= Student.PASSED;
+                }
+                table[exam * SCORES + assessment] = (byte) code;
+            }
+        }
+    }
+
+    /**
+     * All the status bits for these scores and fees
+     */
+    int status(int exam, int assessment, int fees) {
+        int code = table[exam * SCORES + assessment];
+        if ((code & Student.PASSED) != 0 && fees >= fullFee) {
+            code |= Student.CERTIFICATE;
+        }
+        return code;
+    }
+
+    boolean passed(int exam, int assessment) {
+        return (table[exam * SCORES + assessment] & Student.PASSED) != 0;
+    }
+
+    boolean condoned(int exam, int assessment) {
+        return (table[exam * SCORES + assessment] & Student.CONDONED) != 0;
+    }
+
+    /**
+     * The condoned windows in the same form the rules file uses
+     */
+    String describeCondoned() {
+        if (condoneWindows.isEmpty()) {
+            return "none";
+        }
+        StringBuilder sb = new StringBuilder();
+        for (int[] w : condoneWindows) {
+            if (sb.length() > 0) {
+                sb.append(", ");
+            }
+            sb.append(range(w[0], w[1])).append('/').append(range(w[2], w[3]));
+        }
+        return sb.toString();
+    }
+
+    private static String range(int low, int high) {
+        return low == high ? String.valueOf(low) : low + "-" + high;
+    }
+
+    /**
+     * The default rules plus any cohorts that have their own
+     */
+    static class Book {
+        final GradingRules defaults;
+        final HashMap<String, GradingRules> cohorts = new HashMap<>(); // By Cohorts.key
+        final HashMap<String, String> cohortNames = new HashMap<>(); // As written in the file
+        String source = "built in";
+
+        Book(GradingRules defaults) {
+            this.defaults = defaults;
+        }
+
+        GradingRules forCohort(String cohort) {
+            if (cohorts.isEmpty() || cohort.isEmpty()) {
+                return defaults;
+            }
+            GradingRules rules = cohorts.get(Cohorts.key(cohort));
+            return rules == null ? defaults : rules;
+        }
+    }
+
+    static Book standardBook() {
+        return new Book(standard());
+    }
+
+    /**
+     * Reads a rules file. Settings that arent mentioned keep their built
+     * in values, and a cohort section starts from the default rules.
+     */
+    static Book load(Path path) throws IOException {
+        GradingRules defaults = standard();
+        HashMap<String, GradingRules> cohorts = new HashMap<>();
+        HashMap<String, String> cohortNames = new HashMap<>();
+
+        GradingRules current = defaults;
+        boolean condoneSeen = false; // The first condone line replaces the inherited ones
+        int lineNumber = 0;
+
+        try (BufferedReader in = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = in.readLine()) != null) {
+                lineNumber++;
+                int hash = line.indexOf('#');
+                if (hash >= 0) {
+                    line = line.substring(0, hash);
+                }
+                line = line.trim();
+                if (line.isEmpty()) {
+                    continue;
+                }
+
+                if (line.startsWith("[")) {
+                    if (!line.endsWith("]") || !line.toLowerCase(Locale.ROOT).startsWith("[cohort ")) {
+                        throw error(path, lineNumber, "expected [cohort name]");
+                    }
+                    String name = line.substring("[cohort ".length(), line.length() - 1).trim();
+                    if (name.isEmpty()) {
+                        throw error(path, lineNumber, "missing cohort name");
+                    }
+                    // Cohorts inherit the default section as it stands so far
+                    current = defaults.copy();
+                    cohorts.put(Cohorts.key(name), current);
+                    cohortNames.put(Cohorts.key(name), name);
+                    condoneSeen = false;
+                    continue;
+                }
+
+                int equals = line.indexOf('=');
+                if (equals < 0) {
+                    throw error(path, lineNumber, "expected setting = value");
+                }
+                String setting = line.substring(0, equals).trim().toLowerCase(Locale.ROOT);
+                String value = line.substring(equals + 1).trim();
+
+                switch (setting) {
+                    case "exam_pass_mark":
+                        current.examPassMark = number(path, lineNumber, value, GradingSystem.MAX_SCORE);
+                        break;
+                    case "assessment_pass_mark":
+                        current.assessmentPassMark = number(path, lineNumber, value, GradingSystem.MAX_SCORE);
+                        break;
+                    case "full_fee":
+                        current.fullFee = number(path, lineNumber, value, GradingSystem.MAX_FEES);
+                        break;
+                    case "condone":
+                        if (!condoneSeen) {
+                            current.condoneWindows.clear();
+                            condoneSeen = true;
+                        }
+                        if (!value.equalsIgnoreCase("none")) {
+                            for (String window : value.split(",")) {
+                                current.condoneWindows.add(window(path, lineNumber, window.trim()));
+                            }
+                        }
+                        break;
+                    default:
+                        throw error(path, lineNumber, "unknown setting " + setting);
+                }
+            }
+        }
+
+        // Compile once the whole file has been read
+        Book book = new Book(defaults);
+        defaults.compile();
+        for (String key : cohorts.keySet()) {
+            GradingRules rules = cohorts.get(key);
+            rules.compile();
+            book.cohorts.put(key, rules);
+        }
+        book.cohortNames.putAll(cohortNames);
+        book.source = path.toString();
+        return book;
+    }
+
+    private static int number(Path path, int lineNumber, String value, int max) throws IOException {
+        try {
+            int n = Integer.parseInt(value);
+            if (n >= 0 && n <= max) {
+                return n;
+            }
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+        throw error(path, lineNumber, "expected a number from 0 to " + max + ", found " + value);
+    }
+
+    /**
+     * Parses "25/14" or "24-25/13-14" into { examLow, examHigh, assessmentLow, assessmentHigh }
+     */
+    private static int[] window(Path path, int lineNumber, String text) throws IOException {
+        String[] sides = text.split("/");
+        if (sides.length != 2) {
+            throw error(path, lineNumber, "expected exam/assessment, found " + text);
+        }
+        int[] w = new int[4];
+        for (int side = 0; side < 2; side++) {
+            String[] ends = sides[side].trim().split("-");
+            if (ends.length > 2) {
+                throw error(path, lineNumber, "bad range " + sides[side]);
+            }
+            w[side * 2] = number(path, lineNumber, ends[0].trim(), GradingSystem.MAX_SCORE);
+            w[side * 2 + 1] = ends.length == 2 ? number(path, lineNumber, ends[1].trim(), GradingSystem.MAX_SCORE)
+                    : w[side * 2];
+            if (w[side * 2] > w[side * 2 + 1]) {
+                throw error(path, lineNumber, "range goes backwards: " + sides[side]);
+            }
+        }
+        return w;
+    }
+
+    private static IOException error(Path path, int lineNumber, String message) {
+        return new IOException(path + " line " + lineNumber + ": " + message);
+    }
+
+    /**
+     * Works out every students status bits again, sharing the students
+     * out over every core
+     */
+    static void regradeInParallel(List<Student> students) {
+        ForkJoinPool.commonPool().invoke(new RegradeTask(students, 0, students.size()));
+    }
+
+    static class RegradeTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        private final List<Student> students;
+        private final int from;
+        private final int to;
+
+        RegradeTask(List<Student> students, int from, int to) {
+            this.students = students;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= REGRADE_THRESHOLD) {
+                for (int i = from; i < to; i++) {
+                    students.get(i).regrade();
+                }
+                return;
+            }
+            int middle = (from + to) >>> 1;
+            ForkJoinTask.invokeAll(new RegradeTask(students, from, middle), new RegradeTask(students, middle, to));
+        }
+    }
+}
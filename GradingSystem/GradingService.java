@@ -0,0 +1,501 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Service mode: several graders working on the roster at once
+ *
+ * Started with "java GradingSystem --serve [port]". Each grader connects
+ * over TCP (for example with "nc localhost 5050") and types commands, one
+ * per line. Every connection gets its own thread, and they all share one
+ * ConcurrentRoster. Type "stop" in the server window to shut it down.
+ *
+ * There is no login, so by default the service only listens on the
+ * loopback address and graders must connect from the same machine.
+ * "--bind address" listens on another address instead (for example
+ * "--bind 0.0.0.0" for every interface); only do that on a trusted network.
+ *
+ *   ADD id|name|exam|assessment|fees[|cohort]
+ *   SET id exam|assessment|fees|name|cohort value
+ *   GET id
+ *   DELETE id
+ *   STATS
+ *   LIST
+ *   QUIT
+ *
+ * "java GradingSystem --stress" runs a stress check instead: many threads
+ * hammer one roster while another keeps taking snapshots, and at the end
+ * the totals must match exactly what the threads did.
+ *
+ * Concepts covered:
+ * - Sockets and a thread per connection
+ * - Thread pools (ExecutorService)
+ * - Testing thread safety under contention
+ */
+class GradingService {
+
+    static final int DEFAULT_PORT = 5050;
+
+    // How long accept() waits before the acceptor checks whether to stop
+    static final int ACCEPT_TIMEOUT_MILLIS = 250;
+
+    // How long stop waits for graders' commands to finish before
+    // interrupting them and saving the snapshot
+    static final int SHUTDOWN_TIMEOUT_SECONDS = 10;
+
+    /**
+     * Accepts graders until "stop" is typed on the console
+     *
+     * host is the address to listen on, or null for the loopback address.
+     */
+    static void serve(String host, int port, ConcurrentRoster roster) {
+        ExecutorService pool = Executors.newCachedThreadPool();
+        Set<Socket> clients = ConcurrentHashMap.newKeySet();
+        AtomicBoolean running = new AtomicBoolean(true);
+
+        try (ServerSocket server = new ServerSocket(port, 0, bindAddress(host))) {
+            System.out.println("Service mode: listening on " + server.getInetAddress().getHostAddress()
+                    + " port " + port + ". Type stop to shut down.");
+
+            // accept() gives up now and then so the acceptor can see "stop";
+            // the server socket itself is closed when this try block ends
+            server.setSoTimeout(ACCEPT_TIMEOUT_MILLIS);
+            Thread acceptor = new Thread(() -> {
+                while (running.get()) {
+                    try {
+                        Socket socket = server.accept();
+                        clients.add(socket);
+                        pool.execute(() -> handleClient(socket, roster, clients));
+                    } catch (IOException e) {
+                        // Timed out (no grader connected) or a failed
+                        // connection: check running and carry on
+                    }
+                }
+            });
+            acceptor.start();
+
+            BufferedReader console = new BufferedReader(new InputStreamReader(System.in));
+            String line;
+            while ((line = console.readLine()) != null && !line.trim().equalsIgnoreCase("stop")) {
+                System.out.println("Type stop to shut down.");
+            }
+
+            running.set(false);
+            acceptor.join();
+            for (Socket socket : clients) {
+                socket.close(); // Wakes up any handler waiting for input
+            }
+        } catch (IOException e) {
+            System.out.println("Service error: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // Let commands already running finish before the snapshot is
+        // written and the journal closed behind them
+        pool.shutdown();
+        try {
+            if (!pool.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                System.out.println("Warning: graders still busy after " + SHUTDOWN_TIMEOUT_SECONDS
+                        + " seconds, interrupting them.");
+                pool.shutdownNow();
+                pool.awaitTermination(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+        } catch (InterruptedException e) {
+            pool.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+
+        try {
+            roster.compact();
+        } catch (IOException e) {
+            System.out.println("Warning: could not save snapshot: " + e.getMessage());
+        }
+        System.out.println("Service stopped.");
+    }
+
+    /**
+     * The address to listen on: loopback unless another was asked for
+     */
+    static InetAddress bindAddress(String host) throws IOException {
+        return (host == null) ? InetAddress.getLoopbackAddress() : InetAddress.getByName(host);
+    }
+
+    /**
+     * Reads and answers one graders commands until they quit
+     */
+    static void handleClient(Socket socket, ConcurrentRoster roster, Set<Socket> clients) {
+        try (socket;
+                BufferedReader in = new BufferedReader(
+                        new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+                Writer out = new BufferedWriter(
+                        new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8))) {
+            out.write("Grading service ready. Commands: ADD, SET, GET, DELETE, STATS, LIST, QUIT\n");
+            out.flush();
+
+            String line;
+            while ((line = in.readLine()) != null) {
+                line = line.trim();
+                if (line.equalsIgnoreCase("QUIT")) {
+                    break;
+                }
+                if (!line.isEmpty()) {
+                    handleCommand(line, roster, out);
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            // The grader disconnected or the server is stopping
+        } finally {
+            clients.remove(socket);
+        }
+    }
+
+    static void handleCommand(String line, ConcurrentRoster roster, Writer out) throws IOException {
+        String[] words = line.split("\\s+", 2);
+        String command = words[0].toUpperCase(Locale.ROOT);
+        String rest = words.length > 1 ? words[1] : "";
+
+        switch (command) {
+            case "ADD": {
+                String[] parts = rest.split("\\|", -1);
+                Student student = parts.length == 5 || parts.length == 6 ? parseStudent(parts) : null;
+                if (student == null) {
+                    out.write("ERROR usage: ADD id|name|exam|assessment|fees[|cohort]\n");
+                } else if (roster.add(student)) {
+                    out.write("OK " + student.getStatus() + "\n");
+                } else {
+                    out.write("ERROR a student with this ID already exists\n");
+                }
+                break;
+            }
+            case "SET": {
+                String[] parts = rest.split("\\s+", 3);
+                if (parts.length < 3) {
+                    out.write("ERROR usage: SET id exam|assessment|fees|name|cohort value\n");
+                    break;
+                }
+                String[] error = new String[1];
+                Student updated = roster.change(parts[0], current -> withField(current, parts[1], parts[2], error));
+                if (error[0] != null) {
+                    out.write("ERROR " + error[0] + "\n");
+                } else if (updated == null) {
+                    out.write("ERROR student not found\n");
+                } else {
+                    out.write("OK " + updated.getStatus() + "\n");
+                }
+                break;
+            }
+            case "GET": {
+                Student student = roster.get(rest.trim());
+                out.write(student == null ? "ERROR student not found\n" : student.toTableRow() + "\n");
+                break;
+            }
+            case "DELETE": {
+                Student removed = roster.remove(rest.trim());
+                out.write(removed == null ? "ERROR student not found\n" : "OK\n");
+                break;
+            }
+            case "STATS":
+                writeStats(roster.snapshot(false), out);
+                break;
+            case "LIST": {
+                ConcurrentRoster.Snapshot snap = roster.snapshot(true);
+                List<Student> rows = TableRenderer.sorted(snap.students, TableRenderer.SORT_ID);
+                TableRenderer table = new TableRenderer(out);
+                table.writeHeader();
+                for (int from = 0; from < rows.size(); from += GradingSystem.FILE_PAGE_SIZE) {
+                    table.writePage(rows, from, Math.min(rows.size(), from + GradingSystem.FILE_PAGE_SIZE));
+                }
+                out.write("END\n");
+                break;
+            }
+            default:
+                out.write("ERROR unknown command " + words[0] + "\n");
+        }
+    }
+
+    /**
+     * Builds a student from id|name|exam|assessment|fees[|cohort], or
+     * returns null if anything is missing or out of range
+     */
+    static Student parseStudent(String[] parts) {
+        String id = parts[0].trim();
+        String name = parts[1].trim();
+        if (id.isEmpty() || name.isEmpty()) {
+            return null;
+        }
+        try {
+            int exam = Integer.parseInt(parts[2].trim());
+            int assessment = Integer.parseInt(parts[3].trim());
+            int fees = Integer.parseInt(parts[4].trim());
+            if (exam < 0 || exam > GradingSystem.MAX_SCORE || assessment < 0 || assessment > GradingSystem.MAX_SCORE
+                    || fees < 0 || fees > GradingSystem.MAX_FEES) {
+                return null;
+            }
+            String cohort = parts.length > 5 ? parts[5].trim() : "";
+            return new Student(id, name, exam, assessment, fees, cohort);
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * A copy of the student with one field changed. Puts a message in
+     * error[0] and returns null if the field or value is no good.
+     */
+    static Student withField(Student s, String field, String value, String[] error) {
+        if (field.equalsIgnoreCase("name")) {
+            if (value.isEmpty() || value.contains("|")) {
+                error[0] = "name cannot be empty or contain |";
+                return null;
+            }
+            return new Student(s.id, value, s.examScore, s.assessmentScore, s.feesPaid, s.cohort);
+        }
+        if (field.equalsIgnoreCase("cohort")) {
+            if (value.contains("|")) {
+                error[0] = "cohort cannot contain |";
+                return null;
+            }
+            return new Student(s.id, s.name, s.examScore, s.assessmentScore, s.feesPaid, value.trim());
+        }
+
+        int number;
+        try {
+            number = Integer.parseInt(value.trim());
+        } catch (NumberFormatException e) {
+            error[0] = "not a number: " + value;
+            return null;
+        }
+        int max = field.equalsIgnoreCase("fees") ? GradingSystem.MAX_FEES : GradingSystem.MAX_SCORE;
+        if (number < 0 || number > max) {
+            error[0] = field + " must be between 0 and " + max;
+            return null;
+        }
+
+        switch (field.toLowerCase(Locale.ROOT)) {
+            case "exam":
+                return new Student(s.id, s.name, number, s.assessmentScore, s.feesPaid, s.cohort);
+            case "assessment":
+                return new Student(s.id, s.name, s.examScore, number, s.feesPaid, s.cohort);
+            case "fees":
+                return new Student(s.id, s.name, s.examScore, s.assessmentScore, number, s.cohort);
+            default:
+                error[0] = "unknown field " + field;
+                return null;
+        }
+    }
+
+    static void writeStats(ConcurrentRoster.Snapshot snap, Writer out) throws IOException {
+        ClassStats stats = snap.stats;
+        if (stats.count == 0) {
+            out.write("Students: 0\n");
+            return;
+        }
+        out.write("Students: " + stats.count + "\n");
+        out.write(String.format("Average exam: %.1f / 50, assessment: %.1f / 50%n",
+                (double) stats.totalExam / stats.count, (double) stats.totalAssessment / stats.count));
+        out.write(String.format("Passed: %d | Failed: %d | Pass rate: %.1f%%%n",
+                stats.passCount, stats.failCount(), stats.passCount * 100.0 / stats.count));
+        out.write("Certificates: " + stats.certificateCount + "\n");
+        out.write("Median total: " + stats.percentile(stats.totalCounts, 50) + " / 100\n");
+        out.write("Top student: " + snap.top.name + " (" + (snap.top.examScore + snap.top.assessmentScore) + "/100)\n");
+        out.write("Needs help: " + snap.lowest.name + " ("
+                + (snap.lowest.examScore + snap.lowest.assessmentScore) + "/100)\n");
+    }
+
+    // ---------------------------------------------------------------
+    // Stress check
+    // ---------------------------------------------------------------
+
+    static final int STRESS_STUDENTS = 10_000;
+    static final int STRESS_HOT_STUDENTS = 16; // Half the edits go to these few
+    static final int STRESS_THREADS = 8;
+    static final int STRESS_OPS_PER_THREAD = 200_000;
+
+    /**
+     * What one worker thread did, so the final totals can be predicted
+     */
+    static class WorkerLog {
+        long examDelta = 0; // Net change to the sum of exam scores
+        int added = 0;
+        int removed = 0;
+        Throwable failure;
+    }
+
+    /**
+     * Runs the stress check and prints the result. Returns true if the
+     * roster stayed consistent.
+     */
+    static boolean stressTest(int threads, int opsPerThread) {
+        System.out.println("\n--- Stress test: " + threads + " threads x " + opsPerThread + " operations ---");
+
+        Random seedRandom = new Random(1);
+        List<Student> initial = new ArrayList<>();
+        long initialExam = 0;
+        for (int i = 0; i < STRESS_STUDENTS; i++) {
+            Student s = new Student("STU" + i, "Student " + i, seedRandom.nextInt(51), seedRandom.nextInt(51),
+                    seedRandom.nextInt(101));
+            initial.add(s);
+            initialExam += s.examScore;
+        }
+        ConcurrentRoster roster = new ConcurrentRoster(initial);
+
+        WorkerLog[] logs = new WorkerLog[threads];
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            WorkerLog log = new WorkerLog();
+            logs[t] = log;
+            int threadNumber = t;
+            workers[t] = new Thread(() -> {
+                try {
+                    runWorker(roster, threadNumber, opsPerThread, log);
+                } catch (Throwable e) {
+                    log.failure = e;
+                }
+            });
+        }
+
+        // Keeps checking that each snapshot agrees with itself while the
+        // workers are busy
+        AtomicBoolean done = new AtomicBoolean(false);
+        long[] snapshotChecks = new long[2]; // Taken, failed
+        Thread checker = new Thread(() -> {
+            while (!done.get()) {
+                snapshotChecks[0]++;
+                if (!snapshotConsistent(roster.snapshot(true))) {
+                    snapshotChecks[1]++;
+                }
+            }
+        });
+
+        long start = System.nanoTime();
+        checker.start();
+        for (Thread worker : workers) {
+            worker.start();
+        }
+        try {
+            for (Thread worker : workers) {
+                worker.join();
+            }
+            done.set(true);
+            checker.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        long expectedExam = initialExam;
+        int expectedCount = STRESS_STUDENTS;
+        boolean ok = true;
+        for (WorkerLog log : logs) {
+            if (log.failure != null) {
+                System.out.println("Worker failed: " + log.failure);
+                ok = false;
+            }
+            expectedExam += log.examDelta;
+            expectedCount += log.added - log.removed;
+        }
+
+        ConcurrentRoster.Snapshot last = roster.snapshot(true);
+        List<String> problems = roster.verify();
+        ok &= report("student count", last.stats.count, expectedCount);
+        ok &= report("exam total", last.stats.totalExam, expectedExam);
+        ok &= report("snapshots that disagreed with themselves", snapshotChecks[1], 0);
+        ok &= report("stripes whose running stats were wrong", problems.size(), 0);
+        for (String problem : problems) {
+            System.out.println("  " + problem);
+        }
+
+        long ops = (long) threads * opsPerThread;
+        System.out.println(String.format("%,d operations in %.2f s (%,.0f ops/sec), %,d snapshots checked",
+                ops, seconds, ops / seconds, snapshotChecks[0]));
+        System.out.println(ok ? "Stress test PASSED" : "Stress test FAILED");
+        return ok;
+    }
+
+    /**
+     * Random mix of edits, adds and deletes. Edits nudge an exam score up
+     * or down by one, and the worker remembers the net change, so lost
+     * updates show up as a wrong exam total at the end.
+     */
+    static void runWorker(ConcurrentRoster roster, int threadNumber, int ops, WorkerLog log) throws IOException {
+        Random random = new Random(100 + threadNumber);
+        ArrayList<String> mine = new ArrayList<>(); // Students this worker added and hasnt deleted
+        int nextId = 0;
+
+        for (int i = 0; i < ops; i++) {
+            int kind = random.nextInt(10);
+            if (kind < 8) {
+                int target = random.nextBoolean() ? random.nextInt(STRESS_HOT_STUDENTS) : random.nextInt(STRESS_STUDENTS);
+                int delta = random.nextBoolean() ? 1 : -1;
+                Student updated = roster.change("STU" + target, current -> {
+                    int exam = current.examScore + delta;
+                    if (exam < 0 || exam > GradingSystem.MAX_SCORE) {
+                        return null;
+                    }
+                    return new Student(current.id, current.name, exam, current.assessmentScore, current.feesPaid,
+                            current.cohort);
+                });
+                if (updated != null) {
+                    log.examDelta += delta;
+                }
+            } else if (kind == 8 || mine.isEmpty()) {
+                Student student = new Student("T" + threadNumber + "-" + nextId++, "Temp", random.nextInt(51),
+                        random.nextInt(51), random.nextInt(101));
+                if (roster.add(student)) {
+                    mine.add(student.id);
+                    log.added++;
+                    log.examDelta += student.examScore;
+                }
+            } else {
+                Student removed = roster.remove(mine.remove(mine.size() - 1));
+                if (removed != null) {
+                    log.removed++;
+                    log.examDelta -= removed.examScore;
+                }
+            }
+        }
+    }
+
+    /**
+     * True if a snapshots running numbers match its own list of students
+     */
+    static boolean snapshotConsistent(ConcurrentRoster.Snapshot snap) {
+        long exam = 0;
+        int passed = 0;
+        for (Student s : snap.students) {
+            exam += s.examScore;
+            if (s.hasPassed()) {
+                passed++;
+            }
+        }
+        return snap.stats.count == snap.students.size() && snap.stats.totalExam == exam
+                && snap.stats.passCount == passed;
+    }
+
+    private static boolean report(String what, long actual, long expected) {
+        boolean ok = actual == expected;
+        System.out.println((ok ? "OK   " : "FAIL ") + what + ": " + actual
+                + (ok ? "" : " (expected " + expected + ")"));
+        return ok;
+    }
+}
@@ -1,10 +1,19 @@
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
 import java.util.Scanner;
-import java.io.FileWriter;
-import java.io.BufferedReader;
-import java.io.FileReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinTask;
 
 /**
  * Student Management System
@@ -16,6 +25,17 @@ import java.io.IOException;
  * Concepts covered:
  * - Classes and Objects (the Student class)
  * - ArrayList for dynamic collections
+ * - HashMap as an index for fast lookups
+ * - Trigram search index (see StudentSearchIndex)
+ * - Running statistics updated on every change (see ClassStats)
+ * - Parallel file import with fork/join (see ParallelRosterImport)
+ * - Binary snapshot files (see RosterSnapshot)
+ * - Write ahead journal of changes (see RosterJournal)
+ * - Several graders at once with a lock striped roster (see GradingService)
+ * - Per cohort statistics computed in parallel (see Cohorts)
+ * - Grading rules loaded from a file into a lookup table (see GradingRules)
+ * - Undo, redo and past versions with a persistent trie (see RosterHistory)
+ * - Always on timing metrics, also published over JMX (see GradingMetrics)
  * - File I/O for data persistence
  * - Object Oriented Design principles
  * - Menu driven application structure
@@ -26,18 +46,122 @@ public class GradingSystem {
     static Scanner scanner = new Scanner(System.in);
     static ArrayList<Student> students = new ArrayList<>();
 
-    // Grading thresholds can be adjusted here
+    // Index from lowercase student ID to the student. Looking someone up
+    // here takes one step instead of checking every student in the list.
+    static HashMap<String, Student> studentIndex = new HashMap<>();
+
+    // Trigram index so searches only look at students that could match
+    static StudentSearchIndex searchIndex = new StudentSearchIndex();
+
+    // Running totals so the statistics report doesnt loop over everyone
+    static ClassStats classStats = new ClassStats();
+
+    // Students grouped by cohort, each group with its own running totals
+    static Cohorts cohorts = new Cohorts();
+
+    // Every saved version of the roster, for undo, redo and looking back
+    static RosterHistory history = new RosterHistory();
+
+    // When true, showStatistics also recomputes everything the slow way
+    // and checks the running totals match. Turn on with --verify-stats
+    static boolean verifyStats = false;
+
+    // Built in grading thresholds. A grading.rules file can change them,
+    // for everyone or per cohort (see GradingRules).
     static final int EXAM_PASS_MARK = 25;
     static final int ASSESSMENT_PASS_MARK = 15;
     static final int FULL_FEE = 100;
 
+    static final String RULES_FILE = "grading.rules";
+    static GradingRules.Book rules = GradingRules.standardBook();
+
+    // Largest values that can be entered
+    static final int MAX_SCORE = 50;
+    static final int MAX_FEES = 100;
+
+    // Files at least this big are imported on all cores (ParallelRosterImport)
+    static final long PARALLEL_IMPORT_BYTES = 16L * 1024 * 1024;
+
+    // Rows per page when listing on screen, and per write when listing to a file
+    static final int PAGE_SIZE = 20;
+    static final int FILE_PAGE_SIZE = 10_000;
+
+    // Percentiles shown by the distribution report, and how its bar charts
+    // are drawn (marks per bar, longest bar)
+    static final int[] PERCENTILES = { 10, 25, 50, 75, 90, 95, 99 };
+    static final int HISTOGRAM_BAND = 5;
+    static final int HISTOGRAM_WIDTH = 40;
+
+    // Students shown by the leaderboard unless asked for another number
+    static final int LEADERBOARD_SIZE = 100;
+
+    // Where the roster is saved. Files ending in .snap use the binary
+    // snapshot format (see RosterSnapshot), anything else is plain text.
+    static final String DATA_FILE = "students.snap";
+    static final String TEXT_FILE = "students.txt";
+
+    // Every add, update and delete is appended here as it happens, so an
+    // edit is saved without rewriting the whole roster (see RosterJournal).
+    // After this many changes the roster is written out as a new snapshot
+    // and the journal is emptied.
+    static final String JOURNAL_FILE = "students.journal";
+    static final int COMPACT_AFTER = 1000;
+    static RosterJournal journal;
+
     public static void main(String[] args) {
         System.out.println("===========================================");
         System.out.println("       Student Management System");
         System.out.println("===========================================");
 
-        // Try to load existing data on startup
-        loadStudentsFromFile("students.txt");
+        int servePort = -1;
+        String bindHost = null;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--verify-stats")) {
+                verifyStats = true;
+            } else if (args[i].equals("--stress")) {
+                // Checks the concurrent roster and exits, without touching the saved data
+                boolean ok = GradingService.stressTest(GradingService.STRESS_THREADS, GradingService.STRESS_OPS_PER_THREAD);
+                System.exit(ok ? 0 : 1);
+            } else if (args[i].equals("--check-compression")) {
+                // Checks that .bgz files read back what was written, then exits
+                System.exit(CompressedRoster.selfCheck() ? 0 : 1);
+            } else if (args[i].equals("--serve")) {
+                servePort = GradingService.DEFAULT_PORT;
+                if (i + 1 < args.length && args[i + 1].matches("\\d+")) {
+                    servePort = Integer.parseInt(args[++i]);
+                }
+            } else if (args[i].equals("--bind") && i + 1 < args.length) {
+                // Service mode only listens on this machine unless told otherwise
+                bindHost = args[++i];
+            }
+        }
+
+        GradingMetrics.registerMBeans();
+
+        // Rules first, so students are graded by them as they load
+        if (new File(RULES_FILE).exists()) {
+            loadRules(RULES_FILE);
+        }
+
+        // Try to load existing data on startup. Older versions saved a
+        // text file, so fall back to that if there is no snapshot yet.
+        if (new File(DATA_FILE).exists()) {
+            loadStudentsFromFile(DATA_FILE);
+        } else {
+            loadStudentsFromFile(TEXT_FILE);
+        }
+
+        // Apply the changes made since that snapshot was written
+        openJournal();
+        history.commit("Loaded " + students.size() + " students");
+
+        // Several graders at once instead of the menu (see GradingService)
+        if (servePort >= 0) {
+            GradingService.serve(bindHost, servePort,
+                    new ConcurrentRoster(students, journal, Path.of(DATA_FILE), COMPACT_AFTER));
+            closeJournal();
+            return;
+        }
 
         boolean running = true;
 
@@ -66,12 +190,46 @@ public class GradingSystem {
                     deleteStudent();
                     break;
                 case "7":
-                    saveStudentsToFile("students.txt");
+                    compactJournal();
                     break;
                 case "8":
                     gradeExplanation();
                     break;
                 case "9":
+                    importStudents();
+                    break;
+                case "10":
+                    exportStudents();
+                    break;
+                case "11":
+                    showDistribution();
+                    break;
+                case "12":
+                    ingestScores();
+                    break;
+                case "13":
+                    cohortReport();
+                    break;
+                case "14":
+                    reloadRules();
+                    break;
+                case "15":
+                    undo();
+                    break;
+                case "16":
+                    redo();
+                    break;
+                case "17":
+                    showHistory();
+                    break;
+                case "18":
+                    showLeaderboard();
+                    break;
+                case "19":
+                    showMetrics();
+                    break;
+                case "0":
+                    closeJournal();
                     System.out.println("\nGoodbye!");
                     running = false;
                     break;
@@ -93,7 +251,18 @@ public class GradingSystem {
         System.out.println("6. Delete student");
         System.out.println("7. Save to file");
         System.out.println("8. How grading works");
-        System.out.println("9. Exit");
+        System.out.println("9. Import students from a file");
+        System.out.println("10. Export students to a file");
+        System.out.println("11. Score distribution and percentiles");
+        System.out.println("12. Ingest score updates from a file");
+        System.out.println("13. Cohort report");
+        System.out.println("14. Reload grading rules");
+        System.out.println("15. Undo last change");
+        System.out.println("16. Redo");
+        System.out.println("17. Change history");
+        System.out.println("18. Leaderboard (top and bottom students)");
+        System.out.println("19. Performance metrics");
+        System.out.println("0. Exit");
         System.out.println("\nTotal students: " + students.size());
     }
 
@@ -120,18 +289,23 @@ public class GradingSystem {
             return;
         }
 
+        System.out.print("Cohort (optional, for example 2024-A): ");
+        String cohort = readCohort();
+
         // Get exam score with validation
-        int exam = getValidScore("Exam Score (0 to 50): ", 0, 50);
+        int exam = getValidScore("Exam Score (0 to 50): ", 0, MAX_SCORE);
 
         // Get assessment score with validation
-        int assessment = getValidScore("Assessment Score (0 to 50): ", 0, 50);
+        int assessment = getValidScore("Assessment Score (0 to 50): ", 0, MAX_SCORE);
 
         // Get fees paid
-        int feesPaid = getValidScore("Fees Paid (0 to 100): ", 0, 100);
+        int feesPaid = getValidScore("Fees Paid (0 to 100): ", 0, MAX_FEES);
 
         // Create and add the student
-        Student student = new Student(id, name, exam, assessment, feesPaid);
-        students.add(student);
+        Student student = new Student(id, name, exam, assessment, feesPaid, cohort);
+        registerStudent(student);
+        logChange(RosterJournal.OP_ADD, student);
+        history.commit("Added " + student.id);
 
         System.out.println("\nStudent added successfully!");
         System.out.println(student.getSummary());
@@ -156,7 +330,8 @@ public class GradingSystem {
     }
 
     /**
-     * Lists all students with their status
+     * Lists all students with their status, a page at a time, or writes
+     * the whole table to a file
      */
     static void listAllStudents() {
         System.out.println("\n--- All Students ---");
@@ -166,14 +341,70 @@ public class GradingSystem {
             return;
         }
 
-        // Print header
-        System.out.println(String.format("%-10s %-20s %-6s %-6s %-6s %-10s %-12s",
-                "ID", "Name", "Exam", "Assess", "Fees", "Status", "Certificate"));
-        System.out.println("-".repeat(75));
+        Cohorts.Cohort cohort = chooseCohort();
+
+        System.out.println("Sort by: 1. Roster order  2. ID  3. Name  4. Total  5. Status");
+        System.out.print("Choice (Enter for roster order): ");
+        String sortChoice = scanner.nextLine().trim();
+        int sortBy = TableRenderer.SORT_ROSTER;
+        if (sortChoice.matches("[1-5]")) {
+            sortBy = Integer.parseInt(sortChoice) - 1;
+        }
+
+        System.out.print("File to write the table to (Enter to show it here): ");
+        String filename = scanner.nextLine().trim();
+
+        List<Student> rows = TableRenderer.sorted(cohort == null ? students : cohort.members, sortBy);
+
+        if (!filename.isEmpty()) {
+            writeTableToFile(rows, filename);
+            return;
+        }
+
+        // Write straight to the console through our own buffer. We flush
+        // it after each page but never close it, since that would close
+        // System.out too.
+        Writer console = new OutputStreamWriter(System.out);
+        TableRenderer table = new TableRenderer(console);
+        int pages = (rows.size() + PAGE_SIZE - 1) / PAGE_SIZE;
+
+        try {
+            for (int page = 0; page < pages; page++) {
+                System.out.println();
+                table.writeHeader();
+                int from = page * PAGE_SIZE;
+                table.writePage(rows, from, Math.min(rows.size(), from + PAGE_SIZE));
+
+                if (page < pages - 1) {
+                    System.out.print("-- Page " + (page + 1) + " of " + pages
+                            + " -- Enter for next page, q to stop: ");
+                    if (scanner.nextLine().trim().equalsIgnoreCase("q")) {
+                        break;
+                    }
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Error writing table: " + e.getMessage());
+        }
+    }
 
-        for (Student s : students) {
-            System.out.println(s.toTableRow());
+    /**
+     * Writes the whole table to a text file
+     */
+    static void writeTableToFile(List<Student> rows, String filename) {
+        long start = System.nanoTime();
+        try (Writer writer = new OutputStreamWriter(new FileOutputStream(filename), StandardCharsets.UTF_8)) {
+            TableRenderer table = new TableRenderer(writer);
+            table.writeHeader();
+            for (int from = 0; from < rows.size(); from += FILE_PAGE_SIZE) {
+                table.writePage(rows, from, Math.min(rows.size(), from + FILE_PAGE_SIZE));
+            }
+        } catch (IOException e) {
+            System.out.println("Error writing table: " + e.getMessage());
+            return;
         }
+        double ms = (System.nanoTime() - start) / 1_000_000.0;
+        System.out.println("Wrote " + rows.size() + " rows to " + filename + String.format(" in %.0f ms", ms));
     }
 
     /**
@@ -182,22 +413,17 @@ public class GradingSystem {
     static void searchStudent() {
         System.out.println("\n--- Search Student ---");
         System.out.print("Enter ID or name to search: ");
-        String query = scanner.nextLine().trim().toLowerCase();
+        String query = scanner.nextLine().trim().toLowerCase(Locale.ROOT);
 
         if (query.isEmpty()) {
             System.out.println("Search term cannot be empty.");
             return;
         }
 
-        ArrayList<Student> results = new ArrayList<>();
-
-        for (Student s : students) {
-            // Search by ID or name (case insensitive)
-            if (s.id.toLowerCase().contains(query) ||
-                    s.name.toLowerCase().contains(query)) {
-                results.add(s);
-            }
-        }
+        // Search by ID or name (case insensitive)
+        long start = System.nanoTime();
+        ArrayList<Student> results = findMatches(query);
+        GradingMetrics.SEARCH.record(System.nanoTime() - start, results.size(), 0);
 
         if (results.isEmpty()) {
             System.out.println("No students found matching '" + query + "'");
@@ -221,46 +447,26 @@ public class GradingSystem {
             return;
         }
 
-        int totalExam = 0;
-        int totalAssessment = 0;
-        int totalFees = 0;
-        int passCount = 0;
-        int failCount = 0;
-        int certificateCount = 0;
-        int highestTotal = 0;
-        int lowestTotal = 100;
-        Student topStudent = null;
-        Student lowestStudent = null;
-
-        for (Student s : students) {
-            int total = s.examScore + s.assessmentScore;
-            totalExam += s.examScore;
-            totalAssessment += s.assessmentScore;
-            totalFees += s.feesPaid;
-
-            if (s.hasPassed()) {
-                passCount++;
-                if (s.getCertificate()) {
-                    certificateCount++;
-                }
-            } else {
-                failCount++;
-            }
-
-            if (total > highestTotal) {
-                highestTotal = total;
-                topStudent = s;
-            }
-            if (total < lowestTotal) {
-                lowestTotal = total;
-                lowestStudent = s;
-            }
+        Cohorts.Cohort cohort = chooseCohort();
+        ClassStats stats = cohort == null ? classStats : cohort.stats;
+        if (cohort != null) {
+            System.out.println("\nCohort: " + cohort.label());
         }
 
-        int count = students.size();
-        double avgExam = (double) totalExam / count;
-        double avgAssessment = (double) totalAssessment / count;
+        // These numbers are kept up to date as students change,
+        // so there is no loop over the whole class here
+        long start = System.nanoTime();
+        int count = stats.count;
+        int passCount = stats.passCount;
+        int failCount = stats.failCount();
+        int certificateCount = stats.certificateCount;
+        ClassStats.Node top = stats.top();
+        ClassStats.Node lowest = stats.lowest();
+
+        double avgExam = (double) stats.totalExam / count;
+        double avgAssessment = (double) stats.totalAssessment / count;
         double passRate = (double) passCount / count * 100;
+        GradingMetrics.STATISTICS.record(System.nanoTime() - start, count, 0);
 
         System.out.println("\nTotal Students: " + count);
         System.out.println();
@@ -273,14 +479,291 @@ public class GradingSystem {
         System.out.println("Certificates Issued: " + certificateCount);
         System.out.println();
 
-        if (topStudent != null) {
-            System.out.println("Top Student: " + topStudent.name + " (" + highestTotal + "/100)");
+        if (top != null) {
+            System.out.println("Top Student: " + top.student.name + " (" + top.total() + "/100)");
         }
-        if (lowestStudent != null) {
-            System.out.println("Needs Help: " + lowestStudent.name + " (" + lowestTotal + "/100)");
+        if (lowest != null) {
+            System.out.println("Needs Help: " + lowest.student.name + " (" + lowest.total() + "/100)");
+        }
+
+        if (verifyStats) {
+            if (cohort == null) {
+                checkStatistics();
+            } else {
+                reportProblems(stats.verify(cohort.members));
+            }
         }
     }
 
+    /**
+     * Shows percentiles and histograms of the scores, and where a chosen
+     * student sits in the class. Everything is read from the score
+     * histograms in classStats, so the roster is never sorted.
+     */
+    static void showDistribution() {
+        System.out.println("\n--- Score Distribution ---");
+
+        if (students.isEmpty()) {
+            System.out.println("No students to analyze.");
+            return;
+        }
+
+        Cohorts.Cohort cohort = chooseCohort();
+        ClassStats stats = cohort == null ? classStats : cohort.stats;
+        if (cohort != null) {
+            System.out.println("\nCohort: " + cohort.label());
+        }
+
+        System.out.println("\nPercentiles (" + stats.count + " students)");
+        System.out.println(String.format("%-12s %6s %6s %6s", "", "Exam", "Assess", "Total"));
+        for (int p : PERCENTILES) {
+            System.out.println(String.format("%-12s %6d %6d %6d", "p" + p,
+                    stats.percentile(stats.examCounts, p),
+                    stats.percentile(stats.assessmentCounts, p),
+                    stats.percentile(stats.totalCounts, p)));
+        }
+
+        printHistogram("Exam scores", stats.examCounts);
+        printHistogram("Assessment scores", stats.assessmentCounts);
+
+        System.out.print("\nEnter a student ID to see their rank (or press Enter to skip): ");
+        String id = scanner.nextLine().trim();
+        if (id.isEmpty()) {
+            return;
+        }
+        Student student = findStudentById(id);
+        if (student == null) {
+            System.out.println("Student not found.");
+            return;
+        }
+
+        int total = student.examScore + student.assessmentScore;
+        System.out.println("\n" + student.name + " (" + student.id + ")");
+        System.out.println(String.format("Exam %d/50: percentile %.1f",
+                student.examScore, stats.percentileRank(stats.examCounts, student.examScore)));
+        System.out.println(String.format("Assessment %d/50: percentile %.1f",
+                student.assessmentScore, stats.percentileRank(stats.assessmentCounts, student.assessmentScore)));
+        if (cohort != null && student.cohortGroup != cohort) {
+            System.out.println("(Not in this cohort; showing where they would rank in it.)");
+        }
+        System.out.println(String.format("Total %d/100: percentile %.1f, position %d of %d",
+                total, stats.percentileRank(stats.totalCounts, total),
+                stats.position(total), stats.count));
+    }
+
+    /**
+     * The best (or weakest) students by total. They are read straight off
+     * the per total lists in classStats, which are kept in order as
+     * scores change, so the class is never sorted (see ClassStats.top).
+     */
+    static void showLeaderboard() {
+        System.out.println("\n--- Leaderboard ---");
+
+        if (students.isEmpty()) {
+            System.out.println("No students to analyze.");
+            return;
+        }
+
+        Cohorts.Cohort cohort = chooseCohort();
+        ClassStats stats = cohort == null ? classStats : cohort.stats;
+
+        System.out.print("1. Top students  2. Students needing help (Enter for top): ");
+        boolean best = !scanner.nextLine().trim().equals("2");
+        System.out.print("How many (Enter for " + LEADERBOARD_SIZE + "): ");
+        String countText = scanner.nextLine().trim();
+        int k = LEADERBOARD_SIZE;
+        if (countText.matches("\\d{1,7}") && Integer.parseInt(countText) > 0) {
+            k = Integer.parseInt(countText);
+        }
+
+        long start = System.nanoTime();
+        List<ClassStats.Node> rows = best ? stats.top(k) : stats.bottom(k);
+        double ms = (System.nanoTime() - start) / 1_000_000.0;
+
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%n%-6s %-10s %-20s %6s %6s %6s  %s%n",
+                "Rank", "ID", "Name", "Total", "Exam", "Assess", "Status"));
+        sb.append("-".repeat(70)).append('\n');
+        // The lists are in total order, so a students position is worked
+        // out from where their total first appears (ties share a position)
+        int position = 0;
+        int lastTotal = -1;
+        for (int i = 0; i < rows.size(); i++) {
+            ClassStats.Node n = rows.get(i);
+            if (n.total() != lastTotal) {
+                lastTotal = n.total();
+                position = best ? i + 1 : stats.count - i - stats.totalCounts[lastTotal] + 1;
+            }
+            String name = n.student.name.length() > 20 ? n.student.name.substring(0, 17) + "..." : n.student.name;
+            sb.append(String.format("%-6d %-10s %-20s %6d %6d %6d  %s%n", position, n.student.id, name,
+                    n.total(), n.exam, n.assessment, n.student.getStatus()));
+        }
+        System.out.print(sb);
+        System.out.println(String.format("%s %d of %d students%s, found in %.3f ms",
+                best ? "Top" : "Bottom", rows.size(), stats.count,
+                cohort == null ? "" : " in " + cohort.label(), ms));
+    }
+
+    /**
+     * How often each timed operation ran and how long it took. The same
+     * figures are published over JMX (see GradingMetrics).
+     */
+    static void showMetrics() {
+        System.out.println("\n--- Performance Metrics ---");
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-11s %7s %6s %12s %14s %9s %9s %9s %9s %9s%n",
+                "Operation", "Count", "Errors", "Records", "Bytes", "Mean ms", "p50 ms", "p90 ms", "p99 ms", "Max ms"));
+        sb.append("-".repeat(105)).append('\n');
+        for (GradingMetrics.Operation op : GradingMetrics.ALL) {
+            sb.append(String.format("%-11s %7d %6d %,12d %,14d %9s %9s %9s %9s %9s%n",
+                    op.name, op.getCount(), op.getErrors(), op.getRecords(), op.getBytes(),
+                    GradingMetrics.formatMillis(op.getMeanMillis()),
+                    GradingMetrics.formatMillis(op.getP50Millis()),
+                    GradingMetrics.formatMillis(op.getP90Millis()),
+                    GradingMetrics.formatMillis(op.getP99Millis()),
+                    GradingMetrics.formatMillis(op.getMaxMillis())));
+        }
+        System.out.print(sb);
+        System.out.println("Percentiles are accurate to about 3%. JMX: GradingSystem:type=Operation");
+
+        System.out.print("\nType reset to clear the figures (or press Enter to go back): ");
+        if (scanner.nextLine().trim().equalsIgnoreCase("reset")) {
+            for (GradingMetrics.Operation op : GradingMetrics.ALL) {
+                op.reset();
+            }
+            System.out.println("Metrics cleared.");
+        }
+    }
+
+    /**
+     * Prints a bar chart of a 0 to 50 score histogram in bands of 5 marks
+     */
+    static void printHistogram(String title, int[] counts) {
+        int bands = (counts.length + HISTOGRAM_BAND - 1) / HISTOGRAM_BAND;
+        int[] bandCounts = new int[bands];
+        int largest = 0;
+        for (int score = 0; score < counts.length; score++) {
+            bandCounts[score / HISTOGRAM_BAND] += counts[score];
+        }
+        for (int n : bandCounts) {
+            largest = Math.max(largest, n);
+        }
+
+        System.out.println("\n" + title);
+        for (int b = 0; b < bands; b++) {
+            int low = b * HISTOGRAM_BAND;
+            int high = Math.min(counts.length - 1, low + HISTOGRAM_BAND - 1);
+            String label = low == high ? String.valueOf(low) : low + "-" + high;
+            // Any non-empty band gets at least one # so it is visible
+            int bar = largest == 0 ? 0 : (int) ((long) bandCounts[b] * HISTOGRAM_WIDTH / largest);
+            if (bar == 0 && bandCounts[b] > 0) {
+                bar = 1;
+            }
+            System.out.println(String.format("%-6s | %-" + HISTOGRAM_WIDTH + "s %d", label, "#".repeat(bar), bandCounts[b]));
+        }
+    }
+
+    /**
+     * Asks which cohort to report on, if there are any. Returns null for
+     * the whole class.
+     */
+    static Cohorts.Cohort chooseCohort() {
+        if (cohorts.size() == 0 || (cohorts.size() == 1 && cohorts.get("") != null)) {
+            return null; // Nobody has a cohort
+        }
+        while (true) {
+            System.out.print("Cohort (Enter for the whole class): ");
+            String name = scanner.nextLine().trim();
+            if (name.isEmpty()) {
+                return null;
+            }
+            Cohorts.Cohort cohort = cohorts.get(name);
+            if (cohort != null) {
+                return cohort;
+            }
+            System.out.println("No cohort called " + name + ". There are " + cohorts.size()
+                    + " cohorts; option 13 lists them all.");
+        }
+    }
+
+    /**
+     * Reads a cohort name, which cannot contain the | separator
+     */
+    static String readCohort() {
+        while (true) {
+            String cohort = scanner.nextLine().trim();
+            if (!cohort.contains("|")) {
+                return cohort;
+            }
+            System.out.print("A cohort cannot contain |. Try again: ");
+        }
+    }
+
+    /**
+     * Statistics for every cohort side by side. Each cohorts figures are
+     * recomputed from its members, with the cohorts shared out over every
+     * CPU core (see Cohorts).
+     */
+    static void cohortReport() {
+        System.out.println("\n--- Cohort Report ---");
+
+        if (students.isEmpty()) {
+            System.out.println("No students to analyze.");
+            return;
+        }
+
+        long start = System.nanoTime();
+        List<Cohorts.Report> reports = cohorts.report();
+        double ms = (System.nanoTime() - start) / 1_000_000.0;
+        reports.sort((a, b) -> String.CASE_INSENSITIVE_ORDER.compare(a.name, b.name));
+
+        // Write through one buffer; a thousand cohorts is a thousand lines
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format("%-20s %8s %6s %6s %7s %6s %6s %6s  %s%n",
+                "Cohort", "Students", "Exam", "Assess", "Pass %", "Certs", "Median", "p90", "Top student"));
+        sb.append("-".repeat(100)).append('\n');
+        for (Cohorts.Report r : reports) {
+            String name = r.name.length() > 20 ? r.name.substring(0, 17) + "..." : r.name;
+            sb.append(String.format("%-20s %8d %6.1f %6.1f %7.1f %6d %6d %6d  %s%n",
+                    name, r.count, r.averageExam, r.averageAssessment, r.passRate,
+                    r.certificates, r.medianTotal, r.p90Total, r.top == null ? "" : r.top.name));
+        }
+        System.out.print(sb);
+        System.out.println(String.format("%d cohorts, %d students, computed in %.1f ms on %d cores",
+                reports.size(), students.size(), ms, Runtime.getRuntime().availableProcessors()));
+
+        if (verifyStats) {
+            // The running per cohort totals should match the fresh figures
+            List<String> problems = new ArrayList<>();
+            for (Cohorts.Cohort cohort : cohorts.all()) {
+                for (String problem : cohort.stats.verify(cohort.members)) {
+                    problems.add(cohort.label() + ": " + problem);
+                }
+            }
+            reportProblems(problems);
+        }
+    }
+
+    /**
+     * Recomputes the statistics with a full pass over every student and
+     * compares them with the running totals
+     */
+    static boolean checkStatistics() {
+        return reportProblems(classStats.verify(students));
+    }
+
+    static boolean reportProblems(List<String> problems) {
+        if (problems.isEmpty()) {
+            System.out.println("\nConsistency check: OK (matches full recompute)");
+            return true;
+        }
+        System.out.println("\nConsistency check FAILED:");
+        for (String problem : problems) {
+            System.out.println("  " + problem);
+        }
+        return false;
+    }
+
     /**
      * Update an existing students record
      */
@@ -303,26 +786,37 @@ public class GradingSystem {
         System.out.println("2. Exam Score");
         System.out.println("3. Assessment Score");
         System.out.println("4. Fees Paid");
-        System.out.println("5. Cancel");
+        System.out.println("5. Cohort");
+        System.out.println("6. Cancel");
 
         System.out.print("Choice: ");
         String choice = scanner.nextLine().trim();
+        String field;
 
         switch (choice) {
             case "1":
+                field = "name";
                 System.out.print("New name: ");
                 student.name = scanner.nextLine().trim();
                 break;
             case "2":
-                student.examScore = getValidScore("New exam score (0 to 50): ", 0, 50);
+                field = "exam";
+                student.examScore = getValidScore("New exam score (0 to 50): ", 0, MAX_SCORE);
                 break;
             case "3":
-                student.assessmentScore = getValidScore("New assessment score (0 to 50): ", 0, 50);
+                field = "assessment";
+                student.assessmentScore = getValidScore("New assessment score (0 to 50): ", 0, MAX_SCORE);
                 break;
             case "4":
-                student.feesPaid = getValidScore("New fees paid (0 to 100): ", 0, 100);
+                field = "fees";
+                student.feesPaid = getValidScore("New fees paid (0 to 100): ", 0, MAX_FEES);
                 break;
             case "5":
+                field = "cohort";
+                System.out.print("New cohort (Enter for none): ");
+                student.cohort = readCohort();
+                break;
+            case "6":
                 System.out.println("Update cancelled.");
                 return;
             default:
@@ -330,6 +824,10 @@ public class GradingSystem {
                 return;
         }
 
+        studentUpdated(student);
+        logChange(RosterJournal.OP_UPDATE, student);
+        history.commit("Updated " + student.id + " (" + field + ")");
+
         System.out.println("\nRecord updated!");
         System.out.println(student.getSummary());
     }
@@ -353,13 +851,129 @@ public class GradingSystem {
         String confirm = scanner.nextLine().trim().toLowerCase();
 
         if (confirm.equals("yes") || confirm.equals("y")) {
-            students.remove(student);
+            removeStudent(student);
+            logChange(RosterJournal.OP_DELETE, student);
+            history.commit("Deleted " + student.id);
             System.out.println("Student deleted.");
         } else {
             System.out.println("Deletion cancelled.");
         }
     }
 
+    /**
+     * Puts the roster back the way it was before the last change
+     */
+    static void undo() {
+        RosterHistory.Version target = history.undoTarget();
+        if (target == null) {
+            System.out.println("\nNothing to undo.");
+            return;
+        }
+        String undone = history.current().description;
+        int changed = moveToVersion(target);
+        System.out.println("\nUndid: " + undone + " (" + changed + " students changed back)");
+    }
+
+    /**
+     * Makes the last undone change again
+     */
+    static void redo() {
+        RosterHistory.Version target = history.redoTarget();
+        if (target == null) {
+            System.out.println("\nNothing to redo.");
+            return;
+        }
+        int changed = moveToVersion(target);
+        System.out.println("\nRedid: " + target.description + " (" + changed + " students changed)");
+    }
+
+    /**
+     * Brings the roster in line with a saved version. Only the students
+     * that differ are touched, and each of them is journaled (in one
+     * batch, like an ingest) so the result survives a restart.
+     */
+    static int moveToVersion(RosterHistory.Version target) {
+        int[] changed = new int[1];
+        if (journal != null) {
+            journal.beginBatch();
+        }
+        history.diffTo(target, (before, after) -> {
+            changed[0]++;
+            if (after == null) {
+                Student student = findStudentById(before.id);
+                if (student != null) {
+                    removeStudent(student);
+                    if (journal != null) {
+                        writeJournal(RosterJournal.OP_DELETE, student);
+                    }
+                }
+            } else {
+                Student student = applyUpsert(after.id, after.name, after.exam, after.assessment, after.fees,
+                        after.cohort);
+                if (journal != null) {
+                    writeJournal(before == null ? RosterJournal.OP_ADD : RosterJournal.OP_UPDATE, student);
+                }
+            }
+        });
+        history.moveTo(target);
+
+        if (journal != null) {
+            try {
+                journal.commit();
+            } catch (IOException e) {
+                System.out.println("Warning: could not write to journal: " + e.getMessage());
+            }
+            if (journal.records() >= COMPACT_AFTER) {
+                compactJournal();
+            }
+        }
+        return changed[0];
+    }
+
+    /**
+     * Lists the saved versions and shows how one student looked in each
+     * of them. Old versions are never changed, so reading them needs no
+     * copying and no locks.
+     */
+    static void showHistory() {
+        System.out.println("\n--- Change History ---");
+        List<RosterHistory.Version> versions = history.versions();
+        RosterHistory.Version current = history.current();
+
+        int from = Math.max(0, versions.size() - PAGE_SIZE);
+        if (from > 0) {
+            System.out.println("(" + from + " older versions not shown)");
+        }
+        for (int i = versions.size() - 1; i >= from; i--) {
+            RosterHistory.Version v = versions.get(i);
+            System.out.println(String.format("#%-5d %tT  %-40s %,10d students%s", v.number, v.time,
+                    v.description, v.size, v == current ? "  <- current" : ""));
+        }
+        System.out.println("Up to " + RosterHistory.MAX_VERSIONS + " versions are kept.");
+
+        System.out.print("\nEnter a student ID to see their past records (or press Enter to skip): ");
+        String id = scanner.nextLine().trim();
+        if (id.isEmpty()) {
+            return;
+        }
+
+        // Unchanged students are the very same Entry in every version,
+        // so a record only needs printing when the Entry changes
+        RosterHistory.Entry previous = null;
+        boolean first = true;
+        for (RosterHistory.Version v : versions) {
+            RosterHistory.Entry entry = v.get(id);
+            boolean changed = entry != previous
+                    && (entry == null || previous == null || !entry.sameAs(previous));
+            if (first || changed) {
+                System.out.println("#" + v.number + " " + v.description + ": "
+                        + (entry == null ? "(not on the roster)" : entry.toString()));
+            }
+            previous = entry;
+            first = false;
+        }
+    }
+
     /**
      * Explains the grading rules
      */
@@ -368,55 +982,276 @@ public class GradingSystem {
         System.out.println("         How The Grading Works");
         System.out.println("===========================================");
 
+        GradingRules standard = rules.defaults;
         System.out.println("\nPASSING REQUIREMENTS:");
-        System.out.println("  Exam Score:       At least " + EXAM_PASS_MARK + " out of 50");
-        System.out.println("  Assessment Score: At least " + ASSESSMENT_PASS_MARK + " out of 50");
+        System.out.println("  Exam Score:       At least " + standard.examPassMark + " out of 50");
+        System.out.println("  Assessment Score: At least " + standard.assessmentPassMark + " out of 50");
         System.out.println("  Must pass BOTH to be considered passed overall");
 
         System.out.println("\nCONDONED PASS:");
-        System.out.println("  Students can still pass if they barely miss one component:");
-        System.out.println("  - Exam = 25, Assessment = 14 (missed by 1 point)");
-        System.out.println("  - Exam = 24, Assessment = 15 (missed by 1 point)");
+        System.out.println("  Students can still pass if they barely miss one component.");
+        System.out.println("  Condoned exam/assessment scores: " + standard.describeCondoned());
 
         System.out.println("\nCERTIFICATE:");
-        System.out.println("  You must pass AND pay fees in full (" + FULL_FEE + "%)");
+        System.out.println("  You must pass AND pay fees of at least " + standard.fullFee + "%");
         System.out.println("  If you pass but havent paid, no certificate is issued");
 
+        if (!rules.cohorts.isEmpty()) {
+            System.out.println("\nCOHORTS WITH THEIR OWN RULES:");
+            for (String key : rules.cohorts.keySet()) {
+                GradingRules r = rules.cohorts.get(key);
+                System.out.println("  " + rules.cohortNames.get(key) + ": exam " + r.examPassMark
+                        + ", assessment " + r.assessmentPassMark + ", fees " + r.fullFee
+                        + ", condoned " + r.describeCondoned());
+            }
+        }
+        System.out.println("\n(Rules: " + rules.source + ")");
+
         System.out.println("\nPress Enter to continue...");
         scanner.nextLine();
     }
 
     /**
-     * Helper to find a student by their ID
+     * Helper to find a student by their ID (case insensitive)
      */
     static Student findStudentById(String id) {
-        for (Student s : students) {
-            if (s.id.equalsIgnoreCase(id)) {
-                return s;
-            }
+        return studentIndex.get(idKey(id));
+    }
+
+    /**
+     * Finds students whose ID or name contains the lowercase query
+     */
+    static ArrayList<Student> findMatches(String query) {
+        searchIndex.ensureBuilt(students);
+        return searchIndex.search(query);
+    }
+
+    /**
+     * Turns an ID into the key used by the index, so "stu001" and "STU001"
+     * land on the same student
+     */
+    static String idKey(String id) {
+        return id.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Adds a student to the list and the index together so they never get
+     * out of sync. Returns false if the ID is already taken.
+     */
+    static boolean registerStudent(Student student) {
+        if (studentIndex.putIfAbsent(idKey(student.id), student) != null) {
+            return false;
+        }
+        student.slot = students.size();
+        students.add(student);
+        searchIndex.add(student);
+        student.statsNode = classStats.add(student);
+        cohorts.add(student);
+        history.put(student);
+        return true;
+    }
+
+    /**
+     * Called after a students fields have been edited so the indexes
+     * can catch up
+     */
+    static void studentUpdated(Student student) {
+        student.regrade();
+        searchIndex.update(student);
+        classStats.remove(student.statsNode);
+        student.statsNode = classStats.add(student);
+        cohorts.update(student);
+        history.put(student);
+    }
+
+    /**
+     * Removes a student from the list and the index.
+     *
+     * Removing from the middle of an ArrayList shifts every later element,
+     * so instead we move the last student into the empty slot. This is
+     * constant time, but it means the list order changes after a delete.
+     */
+    static void removeStudent(Student student) {
+        studentIndex.remove(idKey(student.id));
+        searchIndex.remove(student);
+        classStats.remove(student.statsNode);
+        student.statsNode = null;
+        cohorts.remove(student);
+        history.remove(student.id);
+
+        Student last = students.remove(students.size() - 1);
+        if (last != student) {
+            students.set(student.slot, last);
+            last.slot = student.slot;
         }
-        return null;
+        student.slot = -1;
     }
 
     /**
-     * Saves all students to a text file
-     * Format: ID|Name|Exam|Assessment|Fees
+     * Bulk grading pass: works out every students status bits again and
+     * rebuilds the statistics that depend on them. Only needed if the
+     * grading rules themselves change.
+     *
+     * The regrading is shared out over every core. The class totals and
+     * the cohort totals are then rebuilt at the same time as each other;
+     * they only write to their own statistics and their own field of each
+     * Student, so they cant get in each others way.
      */
-    static void saveStudentsToFile(String filename) {
-        try (FileWriter writer = new FileWriter(filename)) {
+    static void regradeAll() {
+        GradingRules.regradeInParallel(students);
+        ForkJoinTask.invokeAll(ForkJoinTask.adapt(() -> {
+            classStats.clear();
             for (Student s : students) {
-                // Use pipe character as delimiter since names might have commas
-                writer.write(s.id + "|" + s.name + "|" + s.examScore + "|" +
-                        s.assessmentScore + "|" + s.feesPaid + "\n");
+                s.statsNode = classStats.add(s);
             }
-            System.out.println("\nSaved " + students.size() + " students to " + filename);
+        }), ForkJoinTask.adapt(cohorts::restat));
+    }
+
+    /**
+     * Reads a rules file, keeping the current rules if it has a mistake.
+     * Returns true if the rules were replaced.
+     */
+    static boolean loadRules(String filename) {
+        try {
+            rules = GradingRules.load(Path.of(filename));
+            System.out.println("Grading rules loaded from " + filename
+                    + (rules.cohorts.isEmpty() ? "" : " (" + rules.cohorts.size() + " cohorts with their own rules)"));
+            return true;
         } catch (IOException e) {
+            System.out.println("Could not load grading rules: " + e.getMessage());
+            System.out.println("Keeping the current rules.");
+            return false;
+        }
+    }
+
+    /**
+     * Loads the rules again (after the file has been edited) and regrades
+     * every student with them
+     */
+    static void reloadRules() {
+        System.out.println("\n--- Reload Grading Rules ---");
+        System.out.print("Rules file (Enter for " + RULES_FILE + "): ");
+        String filename = scanner.nextLine().trim();
+        if (filename.isEmpty()) {
+            filename = RULES_FILE;
+        }
+        if (!new File(filename).exists()) {
+            System.out.println("File not found.");
+            return;
+        }
+        if (!loadRules(filename)) {
+            return;
+        }
+
+        int passedBefore = classStats.passCount;
+        long start = System.nanoTime();
+        regradeAll();
+        double ms = (System.nanoTime() - start) / 1_000_000.0;
+        System.out.println(String.format("Regraded %d students in %.1f ms on %d cores",
+                students.size(), ms, Runtime.getRuntime().availableProcessors()));
+        System.out.println("Passed: " + passedBefore + " before, " + classStats.passCount + " now");
+        if (verifyStats) {
+            checkStatistics();
+        }
+    }
+
+    /**
+     * Empties the roster and its index
+     */
+    static void clearStudents() {
+        students.clear();
+        studentIndex.clear();
+        searchIndex.clear();
+        classStats.clear();
+        cohorts.clear();
+        history.clear();
+    }
+
+    /**
+     * Saves all students to a file. The format is picked from the file
+     * name: .snap files get the binary snapshot, anything else the
+     * ID|Name|Exam|Assessment|Fees text format, compressed if the name
+     * ends in .gz or .bgz (see CompressedRoster).
+     */
+    static boolean saveStudentsToFile(String filename) {
+        long start = System.nanoTime();
+        try {
+            long bytes;
+            if (isSnapshotFile(filename)) {
+                bytes = RosterSnapshot.save(Path.of(filename), students);
+            } else {
+                bytes = saveTextFile(filename);
+            }
+            long nanos = System.nanoTime() - start;
+            GradingMetrics.SAVE.record(nanos, students.size(), bytes);
+            System.out.println("\nSaved " + students.size() + " students to " + filename
+                    + String.format(" (%,d bytes in %.0f ms)", bytes, nanos / 1_000_000.0));
+            return true;
+        } catch (IOException e) {
+            GradingMetrics.SAVE.failed(System.nanoTime() - start);
             System.out.println("Error saving file: " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Writes the text format. Each piece is written straight into one
+     * buffered writer instead of building a String per student.
+     */
+    static long saveTextFile(String filename) throws IOException {
+        try (Writer writer = new BufferedWriter(new OutputStreamWriter(
+                CompressedRoster.openForWrite(filename), StandardCharsets.UTF_8), 64 * 1024)) {
+            for (Student s : students) {
+                // Use pipe character as delimiter since names might have commas
+                writer.write(s.id);
+                writer.write('|');
+                writer.write(s.name);
+                writer.write('|');
+                writer.write(Integer.toString(s.examScore));
+                writer.write('|');
+                writer.write(Integer.toString(s.assessmentScore));
+                writer.write('|');
+                writer.write(Integer.toString(s.feesPaid));
+                if (!s.cohort.isEmpty()) {
+                    writer.write('|');
+                    writer.write(s.cohort);
+                }
+                writer.write('\n');
+            }
+        }
+        return new File(filename).length();
+    }
+
+    static boolean isSnapshotFile(String filename) {
+        return filename.toLowerCase(Locale.ROOT).endsWith(".snap");
+    }
+
+    /**
+     * Writes the roster to a file of the users choice, for example a
+     * text copy to share or edit by hand
+     */
+    static void exportStudents() {
+        System.out.println("\n--- Export Students ---");
+        System.out.println("Use a .txt name for text or .snap for a binary snapshot.");
+        System.out.println("Add .gz (or .bgz for block gzip, which loads faster on several cores) to compress text.");
+        System.out.print("File to write: ");
+        String filename = scanner.nextLine().trim();
+
+        if (filename.isEmpty()) {
+            System.out.println("File name cannot be empty.");
+            return;
         }
+        saveStudentsToFile(filename);
     }
 
     /**
-     * Loads students from a text file
+     * Loads students from a file (a snapshot, recognised by its header, or
+     * text)
+     *
+     * Text files use RosterParser, which reads the file in chunks and
+     * parses each line without split() or extra Strings. Lines that cant
+     * be read are counted and reported instead of being silently dropped.
+     * Text files ending in .gz or .bgz are decompressed as they are read.
      */
     static void loadStudentsFromFile(String filename) {
         File file = new File(filename);
@@ -424,143 +1259,255 @@ public class GradingSystem {
             return; // No saved data yet, thats fine
         }
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            int count = 0;
-
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split("\\|");
-                if (parts.length == 5) {
-                    try {
-                        String id = parts[0];
-                        String name = parts[1];
-                        int exam = Integer.parseInt(parts[2]);
-                        int assessment = Integer.parseInt(parts[3]);
-                        int fees = Integer.parseInt(parts[4]);
-
-                        students.add(new Student(id, name, exam, assessment, fees));
-                        count++;
-                    } catch (NumberFormatException e) {
-                        // Skip malformed lines
-                    }
-                }
-            }
-
-            if (count > 0) {
-                System.out.println("Loaded " + count + " students from " + filename);
-            }
+        long start = System.nanoTime();
+        try {
+            RosterParser.Result result = loadRoster(file);
+            // Bytes as stored on disk, so compressed files count as read
+            GradingMetrics.LOAD.record(System.nanoTime() - start, result.loaded, file.length());
+            printLoadReport(filename, result);
         } catch (IOException e) {
+            GradingMetrics.LOAD.failed(System.nanoTime() - start);
             System.out.println("Error loading file: " + e.getMessage());
         }
     }
-}
-
-/**
- * Student class represents a single student record
- * 
- * This is a simple example of Object Oriented Programming (OOP).
- * We put all the data about a student together with methods that
- * work on that data. This is called encapsulation.
- */
-class Student {
-    // Student properties (fields)
-    String id;
-    String name;
-    int examScore;
-    int assessmentScore;
-    int feesPaid;
 
-    // Constructor to create a new student with all info at once
-    public Student(String id, String name, int examScore, int assessmentScore, int feesPaid) {
-        this.id = id;
-        this.name = name;
-        this.examScore = examScore;
-        this.assessmentScore = assessmentScore;
-        this.feesPaid = feesPaid;
+    /**
+     * Adds every student in the file to the roster, picking the reader
+     * from the snapshot header, then the file name and size
+     */
+    static RosterParser.Result loadRoster(File file) throws IOException {
+        // Cheaper to rebuild the search index once than to update it per line
+        searchIndex.invalidate();
+
+        // Snapshots are recognised by their header, so a renamed one still
+        // loads, and a .snap file that isnt one says so instead of failing
+        // somewhere in the middle
+        String filename = file.getPath();
+        boolean snapshot = RosterSnapshot.isSnapshot(file.toPath());
+        if (isSnapshotFile(filename) && !snapshot) {
+            throw new IOException(filename + " is not a roster snapshot (it has no snapshot header)");
+        }
+        if (snapshot) {
+            return RosterSnapshot.load(file.toPath(), GradingSystem::registerStudent);
+        } else if (CompressedRoster.isBlockGzip(filename)) {
+            // Blocks are decompressed and parsed on every core
+            return CompressedRoster.loadBlocks(file.toPath(), GradingSystem::registerStudent);
+        } else if (CompressedRoster.isGzip(filename)) {
+            // Decompressed on a second thread while this one parses
+            return CompressedRoster.loadGzip(file.toPath(), GradingSystem::registerStudent);
+        } else if (file.length() >= PARALLEL_IMPORT_BYTES) {
+            // Big file: parse chunks of it on every core at once
+            return ParallelRosterImport.importFile(file.toPath(), GradingSystem::registerStudent);
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            return RosterParser.parse(in, GradingSystem::registerStudent);
+        }
     }
 
     /**
-     * Checks if the student passed the exam component
+     * Adds the students from another roster file to the current ones
      */
-    public boolean passedExam() {
-        return examScore >= GradingSystem.EXAM_PASS_MARK;
+    static void importStudents() {
+        System.out.println("\n--- Import Students ---");
+        System.out.print("File to import: ");
+        String filename = scanner.nextLine().trim();
+
+        if (!new File(filename).exists()) {
+            System.out.println("File not found.");
+            return;
+        }
+
+        int before = students.size();
+        loadStudentsFromFile(filename);
+        System.out.println("Imported " + (students.size() - before) + " new students.");
+        history.commit("Imported " + filename);
+
+        // Imports arent journaled one by one, so save a snapshot right away
+        compactJournal();
     }
 
     /**
-     * Checks if the student passed the assessment component
+     * Applies a file of ID|Exam|Assessment|Fees rows in batches (see
+     * ScoreIngest) and reports how it went
      */
-    public boolean passedAssessment() {
-        return assessmentScore >= GradingSystem.ASSESSMENT_PASS_MARK;
+    static void ingestScores() {
+        System.out.println("\n--- Ingest Score Updates ---");
+        System.out.println("Each line: ID|Exam|Assessment|Fees. Unknown IDs are added as new students.");
+        System.out.println("Files ending in .gz or .bgz are decompressed as they are read.");
+        System.out.print("File to ingest: ");
+        String filename = scanner.nextLine().trim();
+
+        if (!new File(filename).exists()) {
+            System.out.println("File not found.");
+            return;
+        }
+
+        System.out.print("Rows per batch (Enter for " + ScoreIngest.DEFAULT_BATCH_SIZE + "): ");
+        String batchText = scanner.nextLine().trim();
+        int batchSize = ScoreIngest.DEFAULT_BATCH_SIZE;
+        if (batchText.matches("\\d{1,7}") && Integer.parseInt(batchText) > 0) {
+            batchSize = Integer.parseInt(batchText);
+        }
+
+        ScoreIngest.Report report;
+        long start = System.nanoTime();
+        try (InputStream in = CompressedRoster.openForRead(Path.of(filename))) {
+            report = ScoreIngest.ingest(in, batchSize);
+            GradingMetrics.INGEST.record(System.nanoTime() - start, report.lines, new File(filename).length());
+        } catch (IOException e) {
+            GradingMetrics.INGEST.failed(System.nanoTime() - start);
+            System.out.println("Error reading file: " + e.getMessage());
+            history.commit("Ingested part of " + filename); // Batches already applied stay
+            return;
+        }
+        history.commit("Ingested " + filename);
+
+        System.out.println("Updated " + report.updated + " students, added " + report.added
+                + " new students in " + report.batches + " batches"
+                + String.format(" (%,.0f rows/sec)", report.rowsPerSecond()));
+        if (report.rejected > 0) {
+            System.out.println("Rejected " + report.rejected + " rows (first at line "
+                    + report.firstRejectedLine + ")");
+        }
+        System.out.println(String.format("Statistics refresh took %.1f ms, journal commits %.1f ms",
+                report.statsNanos / 1_000_000.0, report.commitNanos / 1_000_000.0));
+        if (report.added > 0) {
+            System.out.println("New students are named after their ID. Use option 5 to set their names.");
+        }
+
+        // One snapshot for the whole ingest rather than one every COMPACT_AFTER rows
+        if (journal != null && journal.records() >= COMPACT_AFTER) {
+            compactJournal();
+        }
     }
 
     /**
-     * Checks if the student qualifies for condoned pass
-     * This is when they barely miss one component
+     * Replays the journal on top of the roster that was just loaded and
+     * opens it for new changes
      */
-    public boolean isCondoned() {
-        boolean almostPassedAssessment = examScore == 25 && assessmentScore == 14;
-        boolean almostPassedExam = examScore == 24 && assessmentScore == 15;
-        return almostPassedAssessment || almostPassedExam;
+    static void openJournal() {
+        Path path = Path.of(JOURNAL_FILE);
+        try {
+            RosterJournal.ReplayResult replayed = RosterJournal.replay(path, new RosterJournal.Handler() {
+                public void upsert(String id, String name, int exam, int assessment, int fees, String cohort) {
+                    applyUpsert(id, name, exam, assessment, fees, cohort);
+                }
+
+                public void delete(String id) {
+                    Student student = findStudentById(id);
+                    if (student != null) {
+                        removeStudent(student);
+                    }
+                }
+            });
+
+            if (replayed.applied > 0) {
+                System.out.println("Replayed " + replayed.applied + " changes from " + JOURNAL_FILE);
+            }
+            if (replayed.damagedTail) {
+                System.out.println("Ignored a damaged change at the end of " + JOURNAL_FILE);
+            }
+            journal = RosterJournal.open(path, replayed);
+        } catch (IOException e) {
+            System.out.println("Journal unavailable (" + e.getMessage() + "). Use option 7 to save changes.");
+            journal = null;
+        }
     }
 
     /**
-     * Returns true if student has passed overall
+     * Sets a students record, adding them if they dont exist yet
      */
-    public boolean hasPassed() {
-        boolean passedBoth = passedExam() && passedAssessment();
-        return passedBoth || isCondoned();
+    static Student applyUpsert(String id, String name, int exam, int assessment, int fees, String cohort) {
+        Student student = findStudentById(id);
+        if (student == null) {
+            student = new Student(id, name, exam, assessment, fees, cohort);
+            registerStudent(student);
+        } else {
+            student.name = name;
+            student.examScore = exam;
+            student.assessmentScore = assessment;
+            student.feesPaid = fees;
+            student.cohort = cohort;
+            studentUpdated(student);
+        }
+        return student;
     }
 
     /**
-     * Returns true if student gets a certificate
-     * Must pass AND pay fees in full
+     * Records one change in the journal, compacting it when it gets long
      */
-    public boolean getCertificate() {
-        return hasPassed() && feesPaid >= GradingSystem.FULL_FEE;
+    static void logChange(byte op, Student student) {
+        if (journal == null || !writeJournal(op, student)) {
+            return;
+        }
+        if (journal.records() >= COMPACT_AFTER) {
+            compactJournal();
+        }
     }
 
     /**
-     * Returns the students overall status as a string
+     * Appends one change to the journal without compacting it. Returns
+     * false (after a warning) if it couldnt be written.
      */
-    public String getStatus() {
-        if (hasPassed()) {
-            if (isCondoned()) {
-                return "CONDONED";
+    static boolean writeJournal(byte op, Student student) {
+        try {
+            if (op == RosterJournal.OP_DELETE) {
+                journal.logDelete(student.id);
+            } else if (op == RosterJournal.OP_ADD) {
+                journal.logAdd(student);
+            } else {
+                journal.logUpdate(student);
             }
-            return "PASSED";
+            return true;
+        } catch (IOException e) {
+            System.out.println("Warning: could not write to journal: " + e.getMessage());
+            return false;
         }
-        return "FAILED";
     }
 
     /**
-     * Returns a detailed summary of the student
+     * Writes the whole roster as a snapshot, then empties the journal.
+     * The snapshot is renamed into place before the journal is touched,
+     * so a crash in between only means some changes get replayed twice,
+     * which does no harm.
      */
-    public String getSummary() {
-        StringBuilder sb = new StringBuilder();
-        sb.append("ID: ").append(id).append("\n");
-        sb.append("Name: ").append(name).append("\n");
-        sb.append("Exam: ").append(examScore).append("/50 - ");
-        sb.append(passedExam() ? "PASSED" : "FAILED").append("\n");
-        sb.append("Assessment: ").append(assessmentScore).append("/50 - ");
-        sb.append(passedAssessment() ? "PASSED" : "FAILED").append("\n");
-        sb.append("Fees: ").append(feesPaid).append("%\n");
-        sb.append("Status: ").append(getStatus()).append("\n");
-        sb.append("Certificate: ").append(getCertificate() ? "YES" : "NO");
-
-        if (hasPassed() && !getCertificate()) {
-            sb.append(" (pay fees to receive)");
+    static void compactJournal() {
+        if (!saveStudentsToFile(DATA_FILE) || journal == null) {
+            return;
         }
+        try {
+            journal.truncate();
+        } catch (IOException e) {
+            System.out.println("Warning: could not empty journal: " + e.getMessage());
+        }
+    }
 
-        return sb.toString();
+    static void closeJournal() {
+        if (journal == null) {
+            return;
+        }
+        try {
+            journal.close();
+        } catch (IOException e) {
+            System.out.println("Warning: could not close journal: " + e.getMessage());
+        }
+        journal = null;
     }
 
     /**
-     * Returns a single line for table display
+     * Prints how a load went: students loaded, speed and skipped lines
      */
-    public String toTableRow() {
-        String shortName = name.length() > 18 ? name.substring(0, 15) + "..." : name;
-        return String.format("%-10s %-20s %-6d %-6d %-6d %-10s %-12s",
-                id, shortName, examScore, assessmentScore, feesPaid,
-                getStatus(), getCertificate() ? "YES" : "NO");
+    static void printLoadReport(String filename, RosterParser.Result result) {
+        if (result.loaded > 0) {
+            System.out.println("Loaded " + result.loaded + " students from " + filename
+                    + String.format(" (%,.0f lines/sec)", result.linesPerSecond()));
+        }
+        if (result.malformed > 0) {
+            System.out.println("Skipped " + result.malformed + " malformed lines (first at line "
+                    + result.firstMalformedLine + ")");
+        }
+        if (result.rejected > 0) {
+            System.out.println("Skipped " + result.rejected + " lines with a duplicate student ID");
+        }
     }
 }
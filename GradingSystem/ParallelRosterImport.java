@@ -0,0 +1,186 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Imports a large roster file using every CPU core
+ *
+ * The file is cut into chunks of roughly equal size. Each cut is moved
+ * forward to the start of the next line so no line is split between two
+ * chunks. The chunks are parsed at the same time on the fork/join pool,
+ * then added to the roster one chunk after another, so the students end
+ * up in the same order as in the file.
+ *
+ * Concepts covered:
+ * - Splitting work into independent pieces
+ * - Fork/join parallelism (fork, then join in order)
+ * - Reading part of a file with FileChannel
+ */
+class ParallelRosterImport {
+
+    // Target chunk size. Small enough to spread work evenly over cores,
+    // big enough that per-chunk overhead doesnt matter.
+    static final long CHUNK_SIZE = 8L * 1024 * 1024;
+
+    /**
+     * Parses the file in parallel and passes every student to the sink
+     * in file order
+     */
+    static RosterParser.Result importFile(Path path, RosterParser.Sink sink) throws IOException {
+        return importFile(path, sink, CHUNK_SIZE);
+    }
+
+    /**
+     * Same as above with a custom chunk size, handy for experiments
+     */
+    static RosterParser.Result importFile(Path path, RosterParser.Sink sink, long chunkSize) throws IOException {
+        long start = System.nanoTime();
+        RosterParser.Result total = new RosterParser.Result();
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            int cores = Runtime.getRuntime().availableProcessors();
+            int chunks = (int) Math.max(cores, (size + chunkSize - 1) / chunkSize);
+            chunks = (int) Math.max(1, Math.min(chunks, size));
+
+            // Work out where each chunk starts, lined up with line starts
+            long[] bounds = new long[chunks + 1];
+            bounds[chunks] = size;
+            for (int i = 1; i < chunks; i++) {
+                long nominal = size * i / chunks;
+                bounds[i] = Math.max(bounds[i - 1], alignToLineStart(channel, nominal, size));
+            }
+
+            // Start every chunk, then collect them in order. While we merge
+            // chunk 0, the other cores are still parsing the later chunks.
+            List<ChunkTask> tasks = new ArrayList<>();
+            for (int i = 0; i < chunks; i++) {
+                ChunkTask task = new ChunkTask(channel, bounds[i], bounds[i + 1]);
+                task.fork();
+                tasks.add(task);
+            }
+
+            for (ChunkTask task : tasks) {
+                merge(task.join(), sink, total);
+            }
+        }
+
+        total.nanos = System.nanoTime() - start;
+        return total;
+    }
+
+    /**
+     * Adds one parsed chunk to the totals and passes its students to the
+     * sink. Chunks must be merged in file order so line numbers add up.
+     */
+    static void merge(ChunkResult chunk, RosterParser.Sink sink, RosterParser.Result total) throws IOException {
+        if (chunk.error != null) {
+            throw chunk.error;
+        }
+        RosterParser.Result r = chunk.result;
+        if (r.firstMalformedLine >= 0 && total.firstMalformedLine < 0) {
+            total.firstMalformedLine = total.lines + r.firstMalformedLine;
+        }
+        total.lines += r.lines;
+        total.malformed += r.malformed;
+        total.bytes += r.bytes;
+        for (Student s : chunk.students) {
+            if (sink.accept(s)) {
+                total.loaded++;
+            } else {
+                total.rejected++;
+            }
+        }
+    }
+
+    /**
+     * Parses bytes[0..length) line by line into the chunk
+     */
+    static void parseLines(byte[] bytes, int length, ChunkResult chunk) {
+        chunk.result.bytes = length;
+        int lineStart = 0;
+        for (int i = 0; i < length; i++) {
+            if (bytes[i] == '\n') {
+                RosterParser.handleLine(bytes, lineStart, i, chunk.students::add, chunk.result);
+                lineStart = i + 1;
+            }
+        }
+        if (lineStart < length) {
+            RosterParser.handleLine(bytes, lineStart, length, chunk.students::add, chunk.result);
+        }
+    }
+
+    /**
+     * Returns the position just after the first newline at or after
+     * pos - 1, which is the start of the line that contains pos
+     * (or pos itself if a line starts there)
+     */
+    static long alignToLineStart(FileChannel channel, long pos, long size) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(4096);
+        long at = pos - 1;
+        while (at < size) {
+            buf.clear();
+            int read = channel.read(buf, at);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buf.get(i) == '\n') {
+                    return at + i + 1;
+                }
+            }
+            at += read;
+        }
+        return size;
+    }
+
+    /**
+     * What one chunk produced
+     */
+    static class ChunkResult {
+        final ArrayList<Student> students = new ArrayList<>();
+        RosterParser.Result result = new RosterParser.Result();
+        IOException error;
+    }
+
+    /**
+     * Reads and parses the bytes between start and end
+     */
+    static class ChunkTask extends RecursiveTask<ChunkResult> {
+        private static final long serialVersionUID = 1L;
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+
+        ChunkTask(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        protected ChunkResult compute() {
+            ChunkResult chunk = new ChunkResult();
+            try {
+                int length = (int) (end - start);
+                ByteBuffer buf = ByteBuffer.allocate(length);
+                // Positional reads are safe to do from many threads at once
+                while (buf.hasRemaining()) {
+                    if (channel.read(buf, start + buf.position()) < 0) {
+                        break;
+                    }
+                }
+                parseLines(buf.array(), buf.position(), chunk);
+            } catch (IOException e) {
+                chunk.error = e;
+            }
+            return chunk;
+        }
+    }
+}
@@ -0,0 +1,526 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Versions of the roster for undo, redo and looking back in time
+ *
+ * Copying a million students for every version would use far too much
+ * memory. Instead the roster is also kept in a persistent hash trie (a
+ * HAMT, hash array mapped trie) keyed by student ID:
+ *
+ * - Each node has up to 32 children, picked by 5 bits of the IDs hash.
+ *   A bitmap says which children exist, so empty slots take no space.
+ * - A saved version is never changed again. Changing a student copies
+ *   only the few nodes on the path from the root to that student; every
+ *   other node is shared with the previous version. A version that
+ *   differs by one student costs a handful of small arrays.
+ * - Because saved versions never change, any thread can read an old
+ *   version without locks.
+ * - To undo, we compare the current version with the one before it. Any
+ *   subtree that is the very same object in both is skipped, so only the
+ *   changed paths are visited.
+ *
+ * While an action is still in progress (for example importing a big
+ * file), nodes created since the last saved version belong to an "edit
+ * token" and are updated in place, which avoids copying the same path
+ * over and over. commit() swaps in a new token, freezing those nodes.
+ *
+ * Concepts covered:
+ * - Persistent (immutable) data structures with structural sharing
+ * - Hash array mapped tries and bit tricks (bitmap + bitCount)
+ * - Undo and redo by diffing versions
+ */
+class RosterHistory {
+
+    static final int MAX_VERSIONS = 500;
+
+    private static final int BITS = 5;
+    private static final int MASK = (1 << BITS) - 1;
+
+    /**
+     * A students values at one moment. Never changed once created.
+     */
+    static final class Entry {
+        final String key; // Lowercase ID
+        final String id;
+        final String name;
+        final String cohort;
+        final int exam;
+        final int assessment;
+        final int fees;
+
+        Entry(Student s) {
+            this.key = GradingSystem.idKey(s.id);
+            this.id = s.id;
+            this.name = s.name;
+            this.cohort = s.cohort;
+            this.exam = s.examScore;
+            this.assessment = s.assessmentScore;
+            this.fees = s.feesPaid;
+        }
+
+        boolean sameAs(Entry other) {
+            return id.equals(other.id) && name.equals(other.name) && cohort.equals(other.cohort)
+                    && exam == other.exam && assessment == other.assessment && fees == other.fees;
+        }
+
+        @Override
+        public String toString() {
+            return id + " | " + name + " | exam " + exam + " | assessment " + assessment + " | fees " + fees
+                    + (cohort.isEmpty() ? "" : " | cohort " + cohort);
+        }
+    }
+
+    /**
+     * One saved version of the roster
+     */
+    static final class Version {
+        final int number;
+        final String description;
+        final long time;
+        final Node root;
+        final int size;
+
+        Version(int number, String description, Node root, int size) {
+            this.number = number;
+            this.description = description;
+            this.time = System.currentTimeMillis();
+            this.root = root;
+            this.size = size;
+        }
+
+        Entry get(String id) {
+            String key = GradingSystem.idKey(id);
+            return root.find(hash(key), key, 0);
+        }
+
+        void forEach(Consumer<Entry> action) {
+            root.forEach(action);
+        }
+    }
+
+    /**
+     * Receives the differences between two versions
+     */
+    interface DiffHandler {
+        /**
+         * before is null for a student that was added, after is null for
+         * one that was removed
+         */
+        void changed(Entry before, Entry after);
+    }
+
+    private Node root = new BitmapNode(null, 0, new Object[0]);
+    private int size = 0;
+    private Object edit = new Object();
+    private boolean dirty = false;
+
+    private final ArrayList<Version> versions = new ArrayList<>();
+    private int current = -1; // Index in versions of the version we are on
+    private int nextNumber = 1;
+
+    // ---------------------------------------------------------------
+    // Recording changes
+    // ---------------------------------------------------------------
+
+    void put(Student student) {
+        Entry entry = new Entry(student);
+        boolean[] added = new boolean[1];
+        root = root.put(edit, hash(entry.key), entry, 0, added);
+        if (added[0]) {
+            size++;
+        }
+        dirty = true;
+    }
+
+    void remove(String id) {
+        String key = GradingSystem.idKey(id);
+        boolean[] removed = new boolean[1];
+        Node result = root.remove(edit, hash(key), key, 0, removed);
+        root = result != null ? result : new BitmapNode(edit, 0, new Object[0]);
+        if (removed[0]) {
+            size--;
+        }
+        dirty = true;
+    }
+
+    void clear() {
+        root = new BitmapNode(edit, 0, new Object[0]);
+        size = 0;
+        dirty = true;
+    }
+
+    boolean hasChanges() {
+        return dirty;
+    }
+
+    /**
+     * Saves the changes made since the last version as a new version.
+     * Any versions that were undone can no longer be redone. Returns null
+     * if nothing changed.
+     */
+    Version commit(String description) {
+        if (!dirty && current >= 0) {
+            return null;
+        }
+        // Forget the undone versions, then freeze the nodes built so far
+        while (versions.size() > current + 1) {
+            versions.remove(versions.size() - 1);
+        }
+        Version version = new Version(nextNumber++, description, root, size);
+        versions.add(version);
+        if (versions.size() > MAX_VERSIONS) {
+            versions.remove(0);
+        }
+        current = versions.size() - 1;
+        edit = new Object();
+        dirty = false;
+        return version;
+    }
+
+    // ---------------------------------------------------------------
+    // Moving between versions
+    // ---------------------------------------------------------------
+
+    Version current() {
+        return current >= 0 ? versions.get(current) : null;
+    }
+
+    Version undoTarget() {
+        return current > 0 ? versions.get(current - 1) : null;
+    }
+
+    Version redoTarget() {
+        return current >= 0 && current < versions.size() - 1 ? versions.get(current + 1) : null;
+    }
+
+    /**
+     * Makes an existing version the current one. The caller must already
+     * have brought the live roster in line with it.
+     */
+    void moveTo(Version version) {
+        current = versions.indexOf(version);
+        root = version.root;
+        size = version.size;
+        edit = new Object(); // Never edit the saved versions nodes in place
+        dirty = false;
+    }
+
+    /**
+     * The saved versions, oldest first
+     */
+    List<Version> versions() {
+        return versions;
+    }
+
+    /**
+     * Calls the handler for every student that differs between the
+     * roster as it stands now and the given version
+     */
+    void diffTo(Version target, DiffHandler handler) {
+        diff(root, target.root, handler);
+    }
+
+    // ---------------------------------------------------------------
+    // The trie
+    // ---------------------------------------------------------------
+
+    static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /**
+     * Compares two slots (an Entry, a Node or null). Identical objects are
+     * skipped straight away, which is what makes diffing two versions that
+     * share most of their nodes fast.
+     */
+    static void diff(Object a, Object b, DiffHandler handler) {
+        if (a == b) {
+            return;
+        }
+        if (a instanceof BitmapNode && b instanceof BitmapNode) {
+            BitmapNode na = (BitmapNode) a;
+            BitmapNode nb = (BitmapNode) b;
+            int bits = na.bitmap | nb.bitmap;
+            while (bits != 0) {
+                int bit = bits & -bits; // Lowest set bit
+                bits &= ~bit;
+                diff(na.slot(bit), nb.slot(bit), handler);
+            }
+            return;
+        }
+        if (a instanceof Entry && b instanceof Entry && ((Entry) a).key.equals(((Entry) b).key)) {
+            if (!((Entry) a).sameAs((Entry) b)) {
+                handler.changed((Entry) a, (Entry) b);
+            }
+            return;
+        }
+
+        // Different shapes (for example one student against a small
+        // subtree): compare their entries directly
+        HashMap<String, Entry> before = new HashMap<>();
+        forEachIn(a, e -> before.put(e.key, e));
+        forEachIn(b, after -> {
+            Entry old = before.remove(after.key);
+            if (old == null || !old.sameAs(after)) {
+                handler.changed(old, after);
+            }
+        });
+        for (Entry old : before.values()) {
+            handler.changed(old, null);
+        }
+    }
+
+    private static void forEachIn(Object slot, Consumer<Entry> action) {
+        if (slot instanceof Entry) {
+            action.accept((Entry) slot);
+        } else if (slot instanceof Node) {
+            ((Node) slot).forEach(action);
+        }
+    }
+
+    abstract static class Node {
+        abstract Entry find(int hash, String key, int shift);
+
+        abstract Node put(Object edit, int hash, Entry entry, int shift, boolean[] added);
+
+        /**
+         * Returns the node without the key, or null if it is now empty
+         */
+        abstract Node remove(Object edit, int hash, String key, int shift, boolean[] removed);
+
+        abstract void forEach(Consumer<Entry> action);
+
+        /**
+         * The only entry in this node, or null if it holds more than one
+         * thing (used to pull a lone entry up into its parent)
+         */
+        abstract Entry single();
+    }
+
+    /**
+     * Up to 32 slots, each an Entry or a child Node. Only the slots that
+     * are used are stored, in bit order.
+     */
+    static final class BitmapNode extends Node {
+        final Object edit;
+        int bitmap;
+        Object[] array;
+
+        BitmapNode(Object edit, int bitmap, Object[] array) {
+            this.edit = edit;
+            this.bitmap = bitmap;
+            this.array = array;
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        Object slot(int bit) {
+            return (bitmap & bit) == 0 ? null : array[index(bit)];
+        }
+
+        @Override
+        Entry find(int hash, String key, int shift) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return null;
+            }
+            Object slot = array[index(bit)];
+            if (slot instanceof Node) {
+                return ((Node) slot).find(hash, key, shift + BITS);
+            }
+            Entry entry = (Entry) slot;
+            return entry.key.equals(key) ? entry : null;
+        }
+
+        @Override
+        Node put(Object edit, int hash, Entry entry, int shift, boolean[] added) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            int idx = index(bit);
+
+            if ((bitmap & bit) == 0) {
+                Object[] grown = new Object[array.length + 1];
+                System.arraycopy(array, 0, grown, 0, idx);
+                grown[idx] = entry;
+                System.arraycopy(array, idx, grown, idx + 1, array.length - idx);
+                added[0] = true;
+                if (this.edit == edit) {
+                    bitmap |= bit;
+                    array = grown;
+                    return this;
+                }
+                return new BitmapNode(edit, bitmap | bit, grown);
+            }
+
+            Object slot = array[idx];
+            Object replacement;
+            if (slot instanceof Node) {
+                Node child = (Node) slot;
+                replacement = child.put(edit, hash, entry, shift + BITS, added);
+                if (replacement == child) {
+                    return this;
+                }
+            } else {
+                Entry existing = (Entry) slot;
+                if (existing.key.equals(entry.key)) {
+                    replacement = entry;
+                } else {
+                    added[0] = true;
+                    replacement = pair(edit, shift + BITS, existing, hash(existing.key), entry, hash);
+                }
+            }
+            return withSlot(edit, idx, replacement);
+        }
+
+        @Override
+        Node remove(Object edit, int hash, String key, int shift, boolean[] removed) {
+            int bit = 1 << ((hash >>> shift) & MASK);
+            if ((bitmap & bit) == 0) {
+                return this;
+            }
+            int idx = index(bit);
+            Object slot = array[idx];
+
+            if (slot instanceof Node) {
+                Node child = (Node) slot;
+                Node result = child.remove(edit, hash, key, shift + BITS, removed);
+                if (result == child) {
+                    return this;
+                }
+                if (result != null) {
+                    // Keep the trie in its simplest shape: a child left
+                    // with one entry is replaced by that entry
+                    Entry single = result.single();
+                    return withSlot(edit, idx, single != null ? single : result);
+                }
+            } else if (!((Entry) slot).key.equals(key)) {
+                return this;
+            }
+
+            removed[0] = true;
+            if (array.length == 1) {
+                return null;
+            }
+            Object[] shrunk = new Object[array.length - 1];
+            System.arraycopy(array, 0, shrunk, 0, idx);
+            System.arraycopy(array, idx + 1, shrunk, idx, array.length - idx - 1);
+            if (this.edit == edit) {
+                bitmap &= ~bit;
+                array = shrunk;
+                return this;
+            }
+            return new BitmapNode(edit, bitmap & ~bit, shrunk);
+        }
+
+        private Node withSlot(Object edit, int idx, Object value) {
+            if (this.edit == edit) {
+                array[idx] = value;
+                return this;
+            }
+            Object[] copy = array.clone();
+            copy[idx] = value;
+            return new BitmapNode(edit, bitmap, copy);
+        }
+
+        @Override
+        void forEach(Consumer<Entry> action) {
+            for (Object slot : array) {
+                forEachIn(slot, action);
+            }
+        }
+
+        @Override
+        Entry single() {
+            return array.length == 1 && array[0] instanceof Entry ? (Entry) array[0] : null;
+        }
+    }
+
+    /**
+     * Entries whose IDs have exactly the same 32 bit hash
+     */
+    static final class CollisionNode extends Node {
+        final int hash;
+        final Entry[] entries;
+
+        CollisionNode(int hash, Entry[] entries) {
+            this.hash = hash;
+            this.entries = entries;
+        }
+
+        @Override
+        Entry find(int hash, String key, int shift) {
+            for (Entry e : entries) {
+                if (e.key.equals(key)) {
+                    return e;
+                }
+            }
+            return null;
+        }
+
+        @Override
+        Node put(Object edit, int hash, Entry entry, int shift, boolean[] added) {
+            if (hash != this.hash) {
+                // Push this node one level down next to the new entry
+                BitmapNode parent = new BitmapNode(edit, 1 << ((this.hash >>> shift) & MASK), new Object[] { this });
+                return parent.put(edit, hash, entry, shift, added);
+            }
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].key.equals(entry.key)) {
+                    Entry[] copy = entries.clone();
+                    copy[i] = entry;
+                    return new CollisionNode(hash, copy);
+                }
+            }
+            Entry[] grown = java.util.Arrays.copyOf(entries, entries.length + 1);
+            grown[entries.length] = entry;
+            added[0] = true;
+            return new CollisionNode(hash, grown);
+        }
+
+        @Override
+        Node remove(Object edit, int hash, String key, int shift, boolean[] removed) {
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].key.equals(key)) {
+                    removed[0] = true;
+                    if (entries.length == 1) {
+                        return null;
+                    }
+                    Entry[] shrunk = new Entry[entries.length - 1];
+                    System.arraycopy(entries, 0, shrunk, 0, i);
+                    System.arraycopy(entries, i + 1, shrunk, i, entries.length - i - 1);
+                    return new CollisionNode(hash, shrunk);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        void forEach(Consumer<Entry> action) {
+            for (Entry e : entries) {
+                action.accept(e);
+            }
+        }
+
+        @Override
+        Entry single() {
+            return entries.length == 1 ? entries[0] : null;
+        }
+    }
+
+    /**
+     * A node holding two entries that landed in the same slot
+     */
+    private static Node pair(Object edit, int shift, Entry a, int hashA, Entry b, int hashB) {
+        if (hashA == hashB) {
+            return new CollisionNode(hashA, new Entry[] { a, b });
+        }
+        BitmapNode node = new BitmapNode(edit, 0, new Object[0]);
+        boolean[] ignored = new boolean[1];
+        return node.put(edit, hashA, a, shift, ignored).put(edit, hashB, b, shift, ignored);
+    }
+}
@@ -0,0 +1,324 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+/**
+ * Append only journal (write ahead log) of roster changes
+ *
+ * Saving one edit used to mean rewriting the whole roster file. Instead,
+ * every add, update and delete is appended to the end of this journal as
+ * one small record. On startup the last snapshot is loaded and the
+ * journal is replayed on top of it. Every so often the roster is written
+ * out as a fresh snapshot and the journal starts again empty
+ * (compaction), so replay never gets long.
+ *
+ * Each record is: length (4 bytes), the change, and a CRC32 checksum
+ * (4 bytes). The cohort was added to the end of add and update records
+ * later; older records simply stop before it and mean "no cohort".
+ * If the program dies halfway through writing a record, the
+ * checksum wont match and replay stops at the last good record.
+ *
+ * Records are handed to the operating system straight away, but the
+ * slower fsync (forcing them onto the disk) is done in batches: after
+ * SYNC_BATCH records, or once SYNC_INTERVAL_MS has passed since the last
+ * sync. A background thread checks the interval, so the last edit before
+ * a pause is synced even if no more edits come. The methods are
+ * synchronized, since that thread and the callers share the file. Bulk
+ * changes can go further with beginBatch() and commit(): the records are
+ * only buffered until commit() writes and syncs them all at once.
+ *
+ * Concepts covered:
+ * - Write ahead logging
+ * - Checksums for detecting damaged data
+ * - Batching expensive operations (group commit)
+ * - Background work with a ScheduledExecutorService
+ */
+class RosterJournal implements AutoCloseable {
+
+    static final int MAGIC = 0x4752444A; // "GRDJ"
+    static final short VERSION = 1;
+    static final int HEADER_BYTES = 6;
+    static final int MAX_RECORD_BYTES = 1 << 20;
+
+    // Change types
+    static final byte OP_ADD = 1;
+    static final byte OP_UPDATE = 2;
+    static final byte OP_DELETE = 3;
+
+    // fsync after this many records, or when this much time has passed
+    static final int SYNC_BATCH = 32;
+    static final long SYNC_INTERVAL_MS = 200;
+
+    private final Path path;
+    private FileOutputStream file;
+    private DataOutputStream out;
+    private final ByteArrayOutputStream recordBytes = new ByteArrayOutputStream(128);
+    private final DataOutputStream record = new DataOutputStream(recordBytes);
+    private final CRC32 crc = new CRC32();
+
+    private int records = 0; // Records since the last compaction
+    private int unsynced = 0;
+    private long lastSync = System.currentTimeMillis();
+    private boolean batching = false;
+
+    // Syncs records left waiting once SYNC_INTERVAL_MS has passed
+    private final ScheduledExecutorService syncer = Executors.newSingleThreadScheduledExecutor(task -> {
+        Thread thread = new Thread(task, "journal-sync");
+        thread.setDaemon(true); // Never keeps the program running by itself
+        return thread;
+    });
+
+    /**
+     * Receives replayed changes
+     */
+    interface Handler {
+        void upsert(String id, String name, int exam, int assessment, int fees, String cohort);
+
+        void delete(String id);
+    }
+
+    /**
+     * What replay found
+     */
+    static class ReplayResult {
+        int applied = 0;
+        boolean damagedTail = false;
+        long goodBytes = 0; // Length of the journal up to the last good record
+    }
+
+    private RosterJournal(Path path) {
+        this.path = path;
+    }
+
+    /**
+     * Opens the journal for appending, creating it if needed. Pass in what
+     * replay found, so a damaged last record can be cut off first (new
+     * records written after it could never be read back).
+     */
+    static RosterJournal open(Path path, ReplayResult replayed) throws IOException {
+        RosterJournal journal = new RosterJournal(path);
+        boolean fresh = !Files.exists(path) || replayed.goodBytes == 0;
+        if (!fresh && replayed.damagedTail) {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+                channel.truncate(replayed.goodBytes);
+            }
+        }
+        journal.openStream(fresh);
+        journal.records = replayed.applied;
+        journal.syncer.scheduleWithFixedDelay(journal::syncIfDue,
+                SYNC_INTERVAL_MS, SYNC_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        return journal;
+    }
+
+    private void openStream(boolean writeHeader) throws IOException {
+        file = new FileOutputStream(path.toFile(), !writeHeader);
+        out = new DataOutputStream(new BufferedOutputStream(file, 16 * 1024));
+        if (writeHeader) {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.flush();
+            file.getChannel().force(false);
+        }
+    }
+
+    synchronized void logAdd(Student s) throws IOException {
+        logStudent(OP_ADD, s);
+    }
+
+    synchronized void logUpdate(Student s) throws IOException {
+        logStudent(OP_UPDATE, s);
+    }
+
+    synchronized void logDelete(String id) throws IOException {
+        recordBytes.reset();
+        record.writeByte(OP_DELETE);
+        record.writeUTF(id);
+        append();
+    }
+
+    private void logStudent(byte op, Student s) throws IOException {
+        recordBytes.reset();
+        record.writeByte(op);
+        record.writeUTF(s.id);
+        record.writeUTF(s.name);
+        record.writeByte(s.examScore);
+        record.writeByte(s.assessmentScore);
+        record.writeByte(s.feesPaid);
+        record.writeUTF(s.cohort);
+        append();
+    }
+
+    private void append() throws IOException {
+        byte[] bytes = recordBytes.toByteArray();
+        crc.reset();
+        crc.update(bytes, 0, bytes.length);
+
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.writeInt((int) crc.getValue());
+        records++;
+        unsynced++;
+        if (batching) {
+            return; // Written and synced by commit()
+        }
+        out.flush(); // Hand it to the OS so a program crash cant lose it
+
+        if (unsynced >= SYNC_BATCH || System.currentTimeMillis() - lastSync >= SYNC_INTERVAL_MS) {
+            sync();
+        }
+    }
+
+    /**
+     * Starts a batch: records are kept in memory until commit()
+     */
+    synchronized void beginBatch() {
+        batching = true;
+    }
+
+    /**
+     * Ends a batch, writing and syncing all of its records in one go
+     */
+    synchronized void commit() throws IOException {
+        batching = false;
+        sync();
+    }
+
+    /**
+     * Run by the background thread: syncs records that have waited
+     * SYNC_INTERVAL_MS, unless a batch is still being built
+     */
+    private synchronized void syncIfDue() {
+        if (unsynced == 0 || batching || System.currentTimeMillis() - lastSync < SYNC_INTERVAL_MS) {
+            return;
+        }
+        try {
+            sync();
+        } catch (IOException e) {
+            System.out.println("Warning: could not sync journal: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Forces every record written so far onto the disk
+     */
+    synchronized void sync() throws IOException {
+        if (unsynced > 0) {
+            out.flush();
+            file.getChannel().force(false);
+            unsynced = 0;
+        }
+        lastSync = System.currentTimeMillis();
+    }
+
+    /**
+     * Number of records since the journal was last emptied
+     */
+    synchronized int records() {
+        return records;
+    }
+
+    /**
+     * Empties the journal. Call this only after a snapshot containing
+     * every change has been safely written.
+     */
+    synchronized void truncate() throws IOException {
+        out.close();
+        openStream(true);
+        records = 0;
+        unsynced = 0;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        syncer.shutdown();
+        sync();
+        out.close();
+    }
+
+    /**
+     * Reads every good record in the journal and passes it to the handler
+     */
+    static ReplayResult replay(Path path, Handler handler) throws IOException {
+        ReplayResult result = new ReplayResult();
+        if (!Files.exists(path) || Files.size(path) == 0) {
+            return result;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(path.toFile())))) {
+            try {
+                if (in.readInt() != MAGIC || in.readShort() != VERSION) {
+                    throw new IOException("not a roster journal");
+                }
+            } catch (EOFException e) {
+                return result; // Died while writing the header, nothing in it
+            }
+
+            result.goodBytes = HEADER_BYTES;
+
+            CRC32 crc = new CRC32();
+            while (true) {
+                // A clean end of file lands exactly between two records
+                int first = in.read();
+                if (first < 0) {
+                    break;
+                }
+
+                byte[] bytes;
+                int storedCrc;
+                try {
+                    int length = (first << 24) | (in.readUnsignedByte() << 16)
+                            | (in.readUnsignedByte() << 8) | in.readUnsignedByte();
+                    if (length <= 0 || length > MAX_RECORD_BYTES) {
+                        result.damagedTail = true;
+                        break;
+                    }
+                    bytes = new byte[length];
+                    in.readFully(bytes);
+                    storedCrc = in.readInt();
+                } catch (EOFException e) {
+                    result.damagedTail = true; // The last record was cut off
+                    break;
+                }
+
+                crc.reset();
+                crc.update(bytes, 0, bytes.length);
+                if ((int) crc.getValue() != storedCrc) {
+                    result.damagedTail = true;
+                    break;
+                }
+
+                DataInputStream rec = new DataInputStream(new ByteArrayInputStream(bytes));
+                byte op = rec.readByte();
+                String id = rec.readUTF();
+                if (op == OP_DELETE) {
+                    handler.delete(id);
+                } else {
+                    String name = rec.readUTF();
+                    int exam = rec.readUnsignedByte();
+                    int assessment = rec.readUnsignedByte();
+                    int fees = rec.readUnsignedByte();
+                    String cohort = rec.available() > 0 ? rec.readUTF() : "";
+                    handler.upsert(id, name, exam, assessment, fees, cohort);
+                }
+                result.applied++;
+                result.goodBytes += 4 + bytes.length + 4;
+            }
+        }
+        return result;
+    }
+}
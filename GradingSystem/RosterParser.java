@@ -0,0 +1,198 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fast reader for the pipe delimited roster format
+ *
+ *   ID|Name|Exam|Assessment|Fees
+ *   ID|Name|Exam|Assessment|Fees|Cohort
+ *
+ * The simple way to read a line is line.split("\\|") followed by
+ * Integer.parseInt on each piece. That creates a regex, an array and five
+ * new Strings for every line, which adds up to a lot of garbage for a big
+ * file. Here we read raw bytes into one reusable buffer, find the pipes
+ * ourselves and turn digits into numbers directly. The only Strings we
+ * create are the ID and the name, which the Student needs anyway.
+ *
+ * Concepts covered:
+ * - Reading a file in fixed size chunks
+ * - Parsing numbers digit by digit
+ * - Avoiding unnecessary object creation
+ */
+class RosterParser {
+
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    /**
+     * Receives each parsed student. Returns false if the student was
+     * rejected (for example a duplicate ID).
+     */
+    interface Sink {
+        boolean accept(Student student);
+    }
+
+    /**
+     * Receives each line of a file as a range of bytes in a buffer that
+     * is reused for the next lines, so copy out anything you want to keep
+     */
+    interface LineHandler {
+        void line(byte[] buf, int start, int end);
+    }
+
+    /**
+     * What happened during a load
+     */
+    static class Result {
+        long lines = 0;
+        int loaded = 0;
+        int malformed = 0;
+        int rejected = 0;
+        long firstMalformedLine = -1;
+        long bytes = 0;
+        long nanos = 0;
+
+        double linesPerSecond() {
+            return nanos == 0 ? 0 : lines * 1_000_000_000.0 / nanos;
+        }
+    }
+
+    /**
+     * Reads every line from the stream and passes the students to the sink
+     */
+    static Result parse(InputStream in, Sink sink) throws IOException {
+        Result result = new Result();
+        long start = System.nanoTime();
+        result.bytes = forEachLine(in, (buf, lineStart, lineEnd) -> handleLine(buf, lineStart, lineEnd, sink, result));
+        result.nanos = System.nanoTime() - start;
+        return result;
+    }
+
+    /**
+     * Reads the stream in big chunks and hands every line (without its
+     * newline) to the handler. Returns the number of bytes read.
+     */
+    static long forEachLine(InputStream in, LineHandler handler) throws IOException {
+        long bytes = 0;
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int filled = 0; // Bytes currently in the buffer
+        int read;
+
+        while ((read = in.read(buffer, filled, buffer.length - filled)) != -1) {
+            filled += read;
+            bytes += read;
+
+            // Handle every complete line in the buffer
+            int lineStart = 0;
+            for (int i = 0; i < filled; i++) {
+                if (buffer[i] == '\n') {
+                    handler.line(buffer, lineStart, i);
+                    lineStart = i + 1;
+                }
+            }
+
+            // Move the unfinished last line to the front for the next read
+            filled -= lineStart;
+            System.arraycopy(buffer, lineStart, buffer, 0, filled);
+
+            // A single line bigger than the buffer: make room for it
+            if (filled == buffer.length) {
+                buffer = java.util.Arrays.copyOf(buffer, buffer.length * 2);
+            }
+        }
+
+        // The last line may not end with a newline
+        if (filled > 0) {
+            handler.line(buffer, 0, filled);
+        }
+        return bytes;
+    }
+
+    /**
+     * Parses one line and records the outcome
+     */
+    static void handleLine(byte[] buf, int start, int end, Sink sink, Result result) {
+        result.lines++;
+        if (end > start && buf[end - 1] == '\r') {
+            end--; // Windows line ending
+        }
+        if (end == start) {
+            return; // Blank lines are fine, just ignore them
+        }
+
+        Student student = parseStudent(buf, start, end);
+        if (student == null) {
+            result.malformed++;
+            if (result.firstMalformedLine < 0) {
+                result.firstMalformedLine = result.lines;
+            }
+        } else if (sink.accept(student)) {
+            result.loaded++;
+        } else {
+            result.rejected++;
+        }
+    }
+
+    /**
+     * Turns buf[start..end) into a Student, or returns null if the line is
+     * malformed (wrong number of fields, bad number, or out of range)
+     */
+    static Student parseStudent(byte[] buf, int start, int end) {
+        // Find the four pipes that separate the five fields, and the
+        // optional fifth one before the cohort
+        int pipe1 = indexOfPipe(buf, start, end);
+        int pipe2 = indexOfPipe(buf, pipe1 + 1, end);
+        int pipe3 = indexOfPipe(buf, pipe2 + 1, end);
+        int pipe4 = indexOfPipe(buf, pipe3 + 1, end);
+        int pipe5 = pipe4 < end ? indexOfPipe(buf, pipe4 + 1, end) : end;
+        if (pipe1 <= start || pipe4 >= end || (pipe5 < end && indexOfPipe(buf, pipe5 + 1, end) < end)) {
+            return null; // Missing ID, too few fields or too many fields
+        }
+
+        int exam = parseInt(buf, pipe2 + 1, pipe3, GradingSystem.MAX_SCORE);
+        int assessment = parseInt(buf, pipe3 + 1, pipe4, GradingSystem.MAX_SCORE);
+        int fees = parseInt(buf, pipe4 + 1, pipe5, GradingSystem.MAX_FEES);
+        if (exam < 0 || assessment < 0 || fees < 0) {
+            return null;
+        }
+
+        String id = new String(buf, start, pipe1 - start, StandardCharsets.UTF_8);
+        String name = new String(buf, pipe1 + 1, pipe2 - pipe1 - 1, StandardCharsets.UTF_8);
+        String cohort = pipe5 < end ? new String(buf, pipe5 + 1, end - pipe5 - 1, StandardCharsets.UTF_8) : "";
+        return new Student(id, name, exam, assessment, fees, cohort);
+    }
+
+    /**
+     * Position of the next '|' at or after from, or end if there isnt one
+     */
+    static int indexOfPipe(byte[] buf, int from, int end) {
+        for (int i = from; i < end; i++) {
+            if (buf[i] == '|') {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Reads the digits in buf[start..end) as a number from 0 to max.
+     * Returns -1 if there are no digits, a non digit, or the value is too big.
+     */
+    static int parseInt(byte[] buf, int start, int end, int max) {
+        if (start >= end) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buf[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+            if (value > max) {
+                return -1;
+            }
+        }
+        return value;
+    }
+}
@@ -0,0 +1,209 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+
+/**
+ * Batch ingest of score updates, for example an exam board upload
+ *
+ *   ID|Exam|Assessment|Fees
+ *
+ * Typing 500,000 scores in through the menu is not an option, and saving
+ * after every single one would be slow too. The file is streamed line by
+ * line into a batch of rows. When the batch is full it is applied in
+ * three steps:
+ *
+ *   1. Every row is applied through the ID index. Known students get
+ *      their scores replaced, unknown IDs are added as new students
+ *      (named after their ID until someone sets a proper name).
+ *   2. The students that changed are regraded, and the statistics,
+ *      cohorts, search index and history are refreshed for them
+ *      (GradingSystem.studentUpdated, as for an edit in the menu).
+ *   3. The batch is committed: its journal records are written and synced
+ *      to disk together, instead of one at a time.
+ *
+ * Rows with a missing field, a non number or a value out of range (the
+ * same limits the menu uses) are rejected and counted.
+ *
+ * Concepts covered:
+ * - Batching work to spread fixed costs over many rows
+ * - Group commit of a write ahead log
+ * - Measuring each stage of a pipeline separately
+ */
+class ScoreIngest {
+
+    static final int DEFAULT_BATCH_SIZE = 10_000;
+
+    /**
+     * What happened during an ingest
+     */
+    static class Report {
+        long lines = 0;
+        int updated = 0;
+        int added = 0;
+        int rejected = 0;
+        long firstRejectedLine = -1;
+        int batches = 0;
+        long bytes = 0;
+        long nanos = 0;
+        long statsNanos = 0; // Time spent regrading and refreshing the statistics
+        long commitNanos = 0; // Time spent writing the journal to disk
+
+        double rowsPerSecond() {
+            return nanos == 0 ? 0 : lines * 1_000_000_000.0 / nanos;
+        }
+    }
+
+    private final int batchSize;
+    private final Report report = new Report();
+
+    // The rows of the current batch, one array per field
+    private final String[] ids;
+    private final int[] exams;
+    private final int[] assessments;
+    private final int[] fees;
+    private int size = 0;
+
+    // Students whose scores changed in the current batch
+    private final ArrayList<Student> touched = new ArrayList<>();
+
+    // Set to null if writing to it fails, so the rest of the rows still apply
+    private RosterJournal journal = GradingSystem.journal;
+
+    private ScoreIngest(int batchSize) {
+        this.batchSize = batchSize;
+        ids = new String[batchSize];
+        exams = new int[batchSize];
+        assessments = new int[batchSize];
+        fees = new int[batchSize];
+    }
+
+    /**
+     * Reads every row from the stream and applies it to the roster in
+     * GradingSystem, batchSize rows at a time
+     */
+    static Report ingest(InputStream in, int batchSize) throws IOException {
+        ScoreIngest ingest = new ScoreIngest(Math.max(1, batchSize));
+        long start = System.nanoTime();
+        ingest.report.bytes = RosterParser.forEachLine(in, ingest::handleLine);
+        ingest.applyBatch(); // Whatever is left over
+        ingest.report.nanos = System.nanoTime() - start;
+        return ingest.report;
+    }
+
+    private void handleLine(byte[] buf, int start, int end) {
+        report.lines++;
+        if (end > start && buf[end - 1] == '\r') {
+            end--; // Windows line ending
+        }
+        if (end == start) {
+            return;
+        }
+
+        // ID|Exam|Assessment|Fees: exactly three pipes
+        int pipe1 = RosterParser.indexOfPipe(buf, start, end);
+        int pipe2 = RosterParser.indexOfPipe(buf, pipe1 + 1, end);
+        int pipe3 = RosterParser.indexOfPipe(buf, pipe2 + 1, end);
+        int exam = -1;
+        int assessment = -1;
+        int paid = -1;
+        if (pipe1 > start && pipe3 < end && RosterParser.indexOfPipe(buf, pipe3 + 1, end) == end) {
+            exam = RosterParser.parseInt(buf, pipe1 + 1, pipe2, GradingSystem.MAX_SCORE);
+            assessment = RosterParser.parseInt(buf, pipe2 + 1, pipe3, GradingSystem.MAX_SCORE);
+            paid = RosterParser.parseInt(buf, pipe3 + 1, end, GradingSystem.MAX_FEES);
+        }
+        if (exam < 0 || assessment < 0 || paid < 0) {
+            report.rejected++;
+            if (report.firstRejectedLine < 0) {
+                report.firstRejectedLine = report.lines;
+            }
+            return;
+        }
+
+        ids[size] = new String(buf, start, pipe1 - start, StandardCharsets.UTF_8);
+        exams[size] = exam;
+        assessments[size] = assessment;
+        fees[size] = paid;
+        size++;
+        if (size == batchSize) {
+            applyBatch();
+        }
+    }
+
+    private void applyBatch() {
+        if (size == 0) {
+            return;
+        }
+        if (journal != null) {
+            journal.beginBatch();
+        }
+
+        // 1. Apply the rows
+        touched.clear();
+        for (int i = 0; i < size; i++) {
+            Student student = GradingSystem.findStudentById(ids[i]);
+            if (student == null) {
+                student = new Student(ids[i], ids[i], exams[i], assessments[i], fees[i]);
+                GradingSystem.registerStudent(student);
+                report.added++;
+                log(RosterJournal.OP_ADD, student);
+            } else {
+                student.examScore = exams[i];
+                student.assessmentScore = assessments[i];
+                student.feesPaid = fees[i];
+                touched.add(student);
+                report.updated++;
+                log(RosterJournal.OP_UPDATE, student);
+            }
+            ids[i] = null;
+        }
+
+        // 2. Regrade the students that changed and refresh everything
+        //    that depends on them, the same way the menu does
+        long start = System.nanoTime();
+        for (Student student : touched) {
+            GradingSystem.studentUpdated(student);
+        }
+        report.statsNanos += System.nanoTime() - start;
+
+        // 3. Commit
+        start = System.nanoTime();
+        if (journal != null) {
+            try {
+                journal.commit();
+            } catch (IOException e) {
+                journalFailed(e);
+            }
+        }
+        report.commitNanos += System.nanoTime() - start;
+
+        report.batches++;
+        size = 0;
+    }
+
+    private void log(byte op, Student student) {
+        if (journal == null) {
+            return;
+        }
+        try {
+            if (op == RosterJournal.OP_ADD) {
+                journal.logAdd(student);
+            } else {
+                journal.logUpdate(student);
+            }
+        } catch (IOException e) {
+            journalFailed(e);
+        }
+    }
+
+    private void journalFailed(IOException e) {
+        System.out.println("Warning: could not write to journal: " + e.getMessage()
+                + ". Use option 7 to save the ingested scores.");
+        try {
+            journal.commit(); // At least leave batch mode
+        } catch (IOException ignored) {
+            // Already reported
+        }
+        journal = null;
+    }
+}
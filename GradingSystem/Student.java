@@ -0,0 +1,174 @@
+/**
+ * Student class represents a single student record
+ * 
+ * This is a simple example of Object Oriented Programming (OOP).
+ * We put all the data about a student together with methods that
+ * work on that data. This is called encapsulation.
+ */
+class Student {
+    // Student properties (fields)
+    String id;
+    String name;
+    int examScore;
+    int assessmentScore;
+    int feesPaid;
+    String cohort = ""; // Empty when the student isnt in a cohort
+
+    // Position of this student in GradingSystem.students (-1 when removed)
+    int slot = -1;
+
+    // The cohort group this student is filed under, their position in its
+    // member list and their entry in its statistics (see Cohorts)
+    Cohorts.Cohort cohortGroup;
+    int cohortSlot = -1;
+    ClassStats.Node cohortNode;
+
+    // Lowercase copies of id and name, kept by StudentSearchIndex so
+    // searches dont have to lowercase every student each time
+    String lowerId;
+    String lowerName;
+    int searchHandle = -1;
+
+    // This students entry in GradingSystem.classStats
+    ClassStats.Node statsNode;
+
+    // Grading results packed into the bits of one int. Worked out once
+    // by regrade() whenever scores or fees change, so listing, statistics
+    // and reports just read bits instead of redoing the checks.
+    static final int PASSED_EXAM = 1;
+    static final int PASSED_ASSESSMENT = 2;
+    static final int CONDONED = 4;
+    static final int PASSED = 8;
+    static final int CERTIFICATE = 16;
+    int statusCode;
+
+    // Constructor to create a new student with all info at once
+    public Student(String id, String name, int examScore, int assessmentScore, int feesPaid) {
+        this(id, name, examScore, assessmentScore, feesPaid, "");
+    }
+
+    public Student(String id, String name, int examScore, int assessmentScore, int feesPaid, String cohort) {
+        this.id = id;
+        this.name = name;
+        this.examScore = examScore;
+        this.assessmentScore = assessmentScore;
+        this.feesPaid = feesPaid;
+        this.cohort = cohort;
+        regrade();
+    }
+
+    /**
+     * Works out the status bits again. Must be called after changing
+     * the scores or fees (GradingSystem.studentUpdated does this).
+     */
+    void regrade() {
+        statusCode = computeStatus(examScore, assessmentScore, feesPaid, cohort);
+    }
+
+    /**
+     * The status bits under the rules for the students cohort. The rules
+     * were graded into a table when they were loaded, so this is one
+     * table read (see GradingRules).
+     */
+    static int computeStatus(int exam, int assessment, int fees, String cohort) {
+        return GradingSystem.rules.forCohort(cohort).status(exam, assessment, fees);
+    }
+
+    static int computeStatus(int exam, int assessment, int fees) {
+        return GradingSystem.rules.defaults.status(exam, assessment, fees);
+    }
+
+    /**
+     * Checks if the student passed the exam component
+     */
+    public boolean passedExam() {
+        return (statusCode & PASSED_EXAM) != 0;
+    }
+
+    /**
+     * Checks if the student passed the assessment component
+     */
+    public boolean passedAssessment() {
+        return (statusCode & PASSED_ASSESSMENT) != 0;
+    }
+
+    /**
+     * Checks if the student qualifies for condoned pass
+     * This is when they barely miss one component
+     */
+    public boolean isCondoned() {
+        return (statusCode & CONDONED) != 0;
+    }
+
+    /**
+     * Returns true if student has passed overall
+     */
+    public boolean hasPassed() {
+        return (statusCode & PASSED) != 0;
+    }
+
+    /**
+     * The default grading rules on plain numbers, so code that doesnt
+     * have a Student object grades exactly the same way
+     */
+    static boolean isCondoned(int exam, int assessment) {
+        return GradingSystem.rules.defaults.condoned(exam, assessment);
+    }
+
+    static boolean hasPassed(int exam, int assessment) {
+        return GradingSystem.rules.defaults.passed(exam, assessment);
+    }
+
+    /**
+     * Returns true if student gets a certificate
+     * Must pass AND pay fees in full
+     */
+    public boolean getCertificate() {
+        return (statusCode & CERTIFICATE) != 0;
+    }
+
+    /**
+     * Returns the students overall status as a string
+     */
+    public String getStatus() {
+        if (hasPassed()) {
+            if (isCondoned()) {
+                return "CONDONED";
+            }
+            return "PASSED";
+        }
+        return "FAILED";
+    }
+
+    /**
+     * Returns a detailed summary of the student
+     */
+    public String getSummary() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("ID: ").append(id).append("\n");
+        sb.append("Name: ").append(name).append("\n");
+        if (!cohort.isEmpty()) {
+            sb.append("Cohort: ").append(cohort).append("\n");
+        }
+        sb.append("Exam: ").append(examScore).append("/50 - ");
+        sb.append(passedExam() ? "PASSED" : "FAILED").append("\n");
+        sb.append("Assessment: ").append(assessmentScore).append("/50 - ");
+        sb.append(passedAssessment() ? "PASSED" : "FAILED").append("\n");
+        sb.append("Fees: ").append(feesPaid).append("%\n");
+        sb.append("Status: ").append(getStatus()).append("\n");
+        sb.append("Certificate: ").append(getCertificate() ? "YES" : "NO");
+
+        if (hasPassed() && !getCertificate()) {
+            sb.append(" (pay fees to receive)");
+        }
+
+        return sb.toString();
+    }
+
+    /**
+     * Returns a single line for table display
+     */
+    public String toTableRow() {
+        return TableRenderer.appendRow(new StringBuilder(80), this).toString();
+    }
+}
@@ -0,0 +1,451 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Column based (struct of arrays) storage for student records
+ *
+ * An ArrayList<Student> holds a pointer to a separate object for every
+ * student, and each object has its own header plus two String objects.
+ * Here we flip it around: one int array per field, with row i of every
+ * array belonging to the same student. The ID and name characters all
+ * live in one shared char array (the string pool).
+ *
+ * Loops that only need scores, like the statistics, then read three
+ * tightly packed int arrays instead of hopping between objects all over
+ * the heap.
+ *
+ * Each row also keeps its cohort (as a number into a small list of cohort
+ * names) and the packed status bits from Student.computeStatus, so pass
+ * and certificate counts follow the same grading rules table as the rest
+ * of the program, cohort rules included. IDs match ignoring case,
+ * compared character by character straight out of the pool, so a lookup
+ * makes no new strings.
+ *
+ * This store is not used by the menu. It is an alternative layout to
+ * compare with ArrayList<Student> for memory and scan speed (see the
+ * benchmarks).
+ *
+ * Concepts covered:
+ * - Struct of arrays vs array of structs
+ * - Storing many strings in one char array
+ * - A hash index built from a plain int array
+ */
+class StudentColumns {
+
+    private int size = 0;
+
+    // One entry per student (row)
+    private int[] exam = new int[16];
+    private int[] assessment = new int[16];
+    private int[] fees = new int[16];
+    private int[] idStart = new int[16];
+    private int[] idLength = new int[16];
+    private int[] nameStart = new int[16];
+    private int[] nameLength = new int[16];
+    private int[] idHash = new int[16];
+    private int[] cohort = new int[16]; // Index into cohortNames
+    private int[] status = new int[16]; // Student.computeStatus bits
+
+    // Every cohort name seen, numbered in the order they first appeared
+    private final ArrayList<String> cohortNames = new ArrayList<>();
+    private final HashMap<String, Integer> cohortNumbers = new HashMap<>();
+
+    // All ID and name characters, one after the other
+    private char[] pool = new char[256];
+    private int poolUsed = 0;
+    private int poolGarbage = 0; // Characters of deleted or renamed entries
+
+    // Hash table of row + 1 (0 means empty), keyed by case insensitive ID
+    private int[] table = new int[32];
+
+    /**
+     * Adds a student. Returns their row, or -1 if the ID is taken.
+     */
+    int add(String id, String name, int examScore, int assessmentScore, int feesPaid) {
+        return add(id, name, examScore, assessmentScore, feesPaid, "");
+    }
+
+    int add(String id, String name, int examScore, int assessmentScore, int feesPaid, String cohortName) {
+        int hash = hashIgnoreCase(id);
+        if (find(id, hash) >= 0) {
+            return -1;
+        }
+        if (size == exam.length) {
+            growRows();
+        }
+        if ((size + 1) * 2 > table.length) {
+            rehash(table.length * 2);
+        }
+
+        int row = size++;
+        exam[row] = examScore;
+        assessment[row] = assessmentScore;
+        fees[row] = feesPaid;
+        cohort[row] = cohortNumber(cohortName);
+        regrade(row);
+        idHash[row] = hash;
+        idStart[row] = appendToPool(id);
+        idLength[row] = id.length();
+        nameStart[row] = appendToPool(name);
+        nameLength[row] = name.length();
+        insertIntoTable(row);
+        return row;
+    }
+
+    /**
+     * Returns the row of the student with this ID (case insensitive), or -1
+     */
+    int find(String id) {
+        return find(id, hashIgnoreCase(id));
+    }
+
+    void setScores(int row, int examScore, int assessmentScore, int feesPaid) {
+        exam[row] = examScore;
+        assessment[row] = assessmentScore;
+        fees[row] = feesPaid;
+        regrade(row);
+    }
+
+    /**
+     * Works out a rows status bits again, from the rules for its cohort
+     */
+    void regrade(int row) {
+        status[row] = Student.computeStatus(exam[row], assessment[row], fees[row], cohortName(row));
+    }
+
+    /**
+     * Regrades every row, after the grading rules have been reloaded
+     */
+    void regradeAll() {
+        for (int row = 0; row < size; row++) {
+            regrade(row);
+        }
+    }
+
+    void setName(int row, String name) {
+        poolGarbage += nameLength[row];
+        nameStart[row] = appendToPool(name);
+        nameLength[row] = name.length();
+        compactPoolIfNeeded();
+    }
+
+    /**
+     * Removes a row by moving the last row into its place, just like
+     * GradingSystem.removeStudent does with the ArrayList
+     */
+    void remove(int row) {
+        int last = size - 1;
+        removeFromTable(row);
+        poolGarbage += idLength[row] + nameLength[row];
+
+        if (row != last) {
+            removeFromTable(last);
+            exam[row] = exam[last];
+            assessment[row] = assessment[last];
+            fees[row] = fees[last];
+            cohort[row] = cohort[last];
+            status[row] = status[last];
+            idHash[row] = idHash[last];
+            idStart[row] = idStart[last];
+            idLength[row] = idLength[last];
+            nameStart[row] = nameStart[last];
+            nameLength[row] = nameLength[last];
+            size--;
+            insertIntoTable(row);
+        } else {
+            size--;
+        }
+        compactPoolIfNeeded();
+    }
+
+    void clear() {
+        size = 0;
+        poolUsed = 0;
+        poolGarbage = 0;
+        Arrays.fill(table, 0);
+        cohortNames.clear();
+        cohortNumbers.clear();
+    }
+
+    int size() {
+        return size;
+    }
+
+    int exam(int row) {
+        return exam[row];
+    }
+
+    int assessment(int row) {
+        return assessment[row];
+    }
+
+    int fees(int row) {
+        return fees[row];
+    }
+
+    String id(int row) {
+        return new String(pool, idStart[row], idLength[row]);
+    }
+
+    String name(int row) {
+        return new String(pool, nameStart[row], nameLength[row]);
+    }
+
+    String cohortName(int row) {
+        return cohortNames.get(cohort[row]);
+    }
+
+    int status(int row) {
+        return status[row];
+    }
+
+    /**
+     * Builds a normal Student object for one row, for code that wants one
+     */
+    Student toStudent(int row) {
+        return new Student(id(row), name(row), exam[row], assessment[row], fees[row], cohortName(row));
+    }
+
+    /**
+     * Copies a list of students into column storage
+     */
+    static StudentColumns fromStudents(List<Student> students) {
+        StudentColumns columns = new StudentColumns();
+        for (Student s : students) {
+            columns.add(s.id, s.name, s.examScore, s.assessmentScore, s.feesPaid, s.cohort);
+        }
+        columns.trimToSize();
+        return columns;
+    }
+
+    /**
+     * Shrinks the arrays to fit the current rows. Growing doubles the
+     * capacity, so after a bulk load up to half of each array is unused.
+     */
+    void trimToSize() {
+        compactPool();
+        int capacity = Math.max(16, size);
+        exam = Arrays.copyOf(exam, capacity);
+        assessment = Arrays.copyOf(assessment, capacity);
+        fees = Arrays.copyOf(fees, capacity);
+        cohort = Arrays.copyOf(cohort, capacity);
+        status = Arrays.copyOf(status, capacity);
+        idStart = Arrays.copyOf(idStart, capacity);
+        idLength = Arrays.copyOf(idLength, capacity);
+        nameStart = Arrays.copyOf(nameStart, capacity);
+        nameLength = Arrays.copyOf(nameLength, capacity);
+        idHash = Arrays.copyOf(idHash, capacity);
+        pool = Arrays.copyOf(pool, Math.max(256, poolUsed));
+    }
+
+    List<Student> toStudents() {
+        List<Student> list = new ArrayList<>(size);
+        for (int row = 0; row < size; row++) {
+            list.add(toStudent(row));
+        }
+        return list;
+    }
+
+    /**
+     * The same numbers as the statistics report, computed with one pass
+     * over the score and status columns
+     */
+    Summary summarize() {
+        Summary summary = new Summary();
+        summary.count = size;
+        int highest = -1;
+        int lowest = Integer.MAX_VALUE;
+
+        for (int row = 0; row < size; row++) {
+            int e = exam[row];
+            int a = assessment[row];
+            int total = e + a;
+            summary.totalExam += e;
+            summary.totalAssessment += a;
+            summary.totalFees += fees[row];
+
+            if ((status[row] & Student.PASSED) != 0) {
+                summary.passCount++;
+            }
+            if ((status[row] & Student.CERTIFICATE) != 0) {
+                summary.certificateCount++;
+            }
+            if (total > highest) {
+                highest = total;
+                summary.topRow = row;
+            }
+            if (total < lowest) {
+                lowest = total;
+                summary.lowestRow = row;
+            }
+        }
+        return summary;
+    }
+
+    /**
+     * Result of summarize()
+     */
+    static class Summary {
+        int count;
+        long totalExam;
+        long totalAssessment;
+        long totalFees;
+        int passCount;
+        int certificateCount;
+        int topRow = -1;
+        int lowestRow = -1;
+    }
+
+    private int cohortNumber(String name) {
+        Integer number = cohortNumbers.get(name);
+        if (number == null) {
+            number = cohortNames.size();
+            cohortNames.add(name);
+            cohortNumbers.put(name, number);
+        }
+        return number;
+    }
+
+    private int find(String id, int hash) {
+        int mask = table.length - 1;
+        int i = mix(hash) & mask;
+        while (table[i] != 0) {
+            int row = table[i] - 1;
+            if (idHash[row] == hash && idEquals(row, id)) {
+                return row;
+            }
+            i = (i + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * Case insensitive match of the row's ID in the pool against id
+     */
+    private boolean idEquals(int row, String id) {
+        int length = idLength[row];
+        if (length != id.length()) {
+            return false;
+        }
+        int start = idStart[row];
+        for (int i = 0; i < length; i++) {
+            if (Character.toLowerCase(pool[start + i]) != Character.toLowerCase(id.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void insertIntoTable(int row) {
+        int mask = table.length - 1;
+        int i = mix(idHash[row]) & mask;
+        while (table[i] != 0) {
+            i = (i + 1) & mask;
+        }
+        table[i] = row + 1;
+    }
+
+    private void removeFromTable(int row) {
+        int mask = table.length - 1;
+        int i = mix(idHash[row]) & mask;
+        while (table[i] != row + 1) {
+            i = (i + 1) & mask;
+        }
+
+        // Shift later entries back so no probe chain is broken by the gap
+        int gap = i;
+        int j = (i + 1) & mask;
+        while (table[j] != 0) {
+            int home = mix(idHash[table[j] - 1]) & mask;
+            boolean canMove = (j > gap) ? (home <= gap || home > j) : (home <= gap && home > j);
+            if (canMove) {
+                table[gap] = table[j];
+                gap = j;
+            }
+            j = (j + 1) & mask;
+        }
+        table[gap] = 0;
+    }
+
+    private void rehash(int capacity) {
+        table = new int[capacity];
+        for (int row = 0; row < size; row++) {
+            insertIntoTable(row);
+        }
+    }
+
+    private void growRows() {
+        int capacity = exam.length * 2;
+        exam = Arrays.copyOf(exam, capacity);
+        assessment = Arrays.copyOf(assessment, capacity);
+        fees = Arrays.copyOf(fees, capacity);
+        cohort = Arrays.copyOf(cohort, capacity);
+        status = Arrays.copyOf(status, capacity);
+        idStart = Arrays.copyOf(idStart, capacity);
+        idLength = Arrays.copyOf(idLength, capacity);
+        nameStart = Arrays.copyOf(nameStart, capacity);
+        nameLength = Arrays.copyOf(nameLength, capacity);
+        idHash = Arrays.copyOf(idHash, capacity);
+    }
+
+    private int appendToPool(String text) {
+        if (poolUsed + text.length() > pool.length) {
+            pool = Arrays.copyOf(pool, Math.max(pool.length * 2, poolUsed + text.length()));
+        }
+        int start = poolUsed;
+        text.getChars(0, text.length(), pool, start);
+        poolUsed += text.length();
+        return start;
+    }
+
+    /**
+     * Deleted strings leave holes in the pool. Once more than half of it
+     * is holes, copy the live strings into a fresh array.
+     */
+    private void compactPoolIfNeeded() {
+        if (poolGarbage >= 1024 && poolGarbage * 2 >= poolUsed) {
+            compactPool();
+        }
+    }
+
+    private void compactPool() {
+        char[] fresh = new char[Math.max(256, (poolUsed - poolGarbage) * 2)];
+        int used = 0;
+        for (int row = 0; row < size; row++) {
+            System.arraycopy(pool, idStart[row], fresh, used, idLength[row]);
+            idStart[row] = used;
+            used += idLength[row];
+            System.arraycopy(pool, nameStart[row], fresh, used, nameLength[row]);
+            nameStart[row] = used;
+            used += nameLength[row];
+        }
+        pool = fresh;
+        poolUsed = used;
+        poolGarbage = 0;
+    }
+
+    /**
+     * Approximate heap bytes used by the arrays
+     */
+    long footprintBytes() {
+        long ints = 10L * exam.length + table.length;
+        return ints * 4 + pool.length * 2L;
+    }
+
+    // Same as String.hashCode, over the lower case characters, so it
+    // agrees with idEquals
+    private static int hashIgnoreCase(String id) {
+        int h = 0;
+        for (int i = 0; i < id.length(); i++) {
+            h = 31 * h + Character.toLowerCase(id.charAt(i));
+        }
+        return h;
+    }
+
+    private static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+}
@@ -0,0 +1,293 @@
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Trigram index for searching students by part of their ID or name
+ *
+ * A trigram is a run of three characters. "bob" has one ("bob"),
+ * "wilson" has four ("wil", "ils", "lso", "son"). Every student is listed
+ * under each trigram of their lowercase ID and name. To search for
+ * "wils" we only have to look at students listed under "wil" or "ils"
+ * instead of every student in the class.
+ *
+ * Building the index for a big roster takes a while, so it is built the
+ * first time someone searches (and thrown away before bulk loads). After
+ * that it is kept up to date on every change.
+ *
+ * Concepts covered:
+ * - Inverted indexes (the idea behind search engines)
+ * - Hash sets built on plain int arrays (open addressing)
+ * - Keeping an index in sync when data changes
+ */
+class StudentSearchIndex {
+
+    // Trigram (packed into a long) -> handles of students containing it
+    private final HashMap<Long, IntSet> postings = new HashMap<>();
+
+    // Each indexed student gets a small int handle so postings can store
+    // ints instead of object references. Freed handles are reused.
+    private Student[] students = new Student[16];
+    private int[] freeHandles = new int[16];
+    private int freeCount = 0;
+    private int nextHandle = 0;
+    private int size = 0;
+
+    // False until the first search builds the index
+    private boolean built = false;
+
+    /**
+     * Builds the index from the roster if it hasnt been built yet
+     */
+    void ensureBuilt(List<Student> roster) {
+        if (built) {
+            return;
+        }
+        built = true;
+        for (Student s : roster) {
+            add(s);
+        }
+    }
+
+    /**
+     * Throws the index away so it is rebuilt on the next search. Cheaper
+     * than updating it one student at a time during a big load.
+     */
+    void invalidate() {
+        clear();
+    }
+
+    /**
+     * Adds a student to the index
+     */
+    void add(Student student) {
+        if (!built) {
+            return;
+        }
+        int handle = allocateHandle();
+        students[handle] = student;
+        student.searchHandle = handle;
+        student.lowerId = student.id.toLowerCase(Locale.ROOT);
+        student.lowerName = student.name.toLowerCase(Locale.ROOT);
+        addTrigrams(student.lowerId, handle);
+        addTrigrams(student.lowerName, handle);
+        size++;
+    }
+
+    /**
+     * Removes a student from the index
+     */
+    void remove(Student student) {
+        int handle = student.searchHandle;
+        if (!built || handle < 0 || students[handle] != student) {
+            return;
+        }
+        removeTrigrams(student.lowerId, handle);
+        removeTrigrams(student.lowerName, handle);
+        students[handle] = null;
+        student.searchHandle = -1;
+        freeHandle(handle);
+        size--;
+    }
+
+    /**
+     * Re-indexes a student whose name may have changed
+     */
+    void update(Student student) {
+        if (!built) {
+            return;
+        }
+        if (student.searchHandle >= 0 && student.name.toLowerCase(Locale.ROOT).equals(student.lowerName)) {
+            return; // Name didnt change, nothing to do
+        }
+        // The ID and name can share a trigram, so rebuild both rather than
+        // only removing the old name's trigrams
+        remove(student);
+        add(student);
+    }
+
+    void clear() {
+        postings.clear();
+        students = new Student[16];
+        freeHandles = new int[16];
+        freeCount = 0;
+        nextHandle = 0;
+        size = 0;
+        built = false;
+    }
+
+    /**
+     * Finds students whose ID or name contains the query.
+     * The query must already be lowercase, and ensureBuilt must have been
+     * called first.
+     */
+    ArrayList<Student> search(String query) {
+        ArrayList<Student> results = new ArrayList<>();
+
+        if (query.length() < 3) {
+            // Too short to have a trigram, so check everyone. The lowercase
+            // copies are stored on each student, so nothing is allocated here.
+            for (int h = 0; h < nextHandle; h++) {
+                Student s = students[h];
+                if (s != null && matches(s, query)) {
+                    results.add(s);
+                }
+            }
+        } else {
+            // Every match contains every trigram of the query, so the
+            // shortest posting list holds all possible matches
+            IntSet smallest = null;
+            for (int i = 0; i + 3 <= query.length(); i++) {
+                IntSet set = postings.get(trigram(query, i));
+                if (set == null) {
+                    return results; // Some trigram appears nowhere
+                }
+                if (smallest == null || set.size < smallest.size) {
+                    smallest = set;
+                }
+            }
+
+            int[] table = smallest.table;
+            for (int h : table) {
+                if (h != IntSet.EMPTY && matches(students[h], query)) {
+                    results.add(students[h]);
+                }
+            }
+        }
+
+        // Hash order is random, so show results in roster order
+        results.sort((a, b) -> Integer.compare(a.slot, b.slot));
+        return results;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private static boolean matches(Student s, String query) {
+        return s.lowerId.contains(query) || s.lowerName.contains(query);
+    }
+
+    private void addTrigrams(String text, int handle) {
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            postings.computeIfAbsent(trigram(text, i), k -> new IntSet()).add(handle);
+        }
+    }
+
+    private void removeTrigrams(String text, int handle) {
+        for (int i = 0; i + 3 <= text.length(); i++) {
+            Long key = trigram(text, i);
+            IntSet set = postings.get(key);
+            if (set != null) {
+                set.remove(handle);
+                if (set.size == 0) {
+                    postings.remove(key);
+                }
+            }
+        }
+    }
+
+    /**
+     * Packs three 16 bit chars into one long so we dont need a String per trigram
+     */
+    private static long trigram(String text, int start) {
+        return ((long) text.charAt(start) << 32)
+                | ((long) text.charAt(start + 1) << 16)
+                | text.charAt(start + 2);
+    }
+
+    private int allocateHandle() {
+        if (freeCount > 0) {
+            return freeHandles[--freeCount];
+        }
+        if (nextHandle == students.length) {
+            students = java.util.Arrays.copyOf(students, students.length * 2);
+        }
+        return nextHandle++;
+    }
+
+    private void freeHandle(int handle) {
+        if (freeCount == freeHandles.length) {
+            freeHandles = java.util.Arrays.copyOf(freeHandles, freeHandles.length * 2);
+        }
+        freeHandles[freeCount++] = handle;
+    }
+
+    /**
+     * A set of non-negative ints stored directly in an int array.
+     *
+     * Uses linear probing: if a slot is taken, try the next one. This is
+     * much smaller than a HashSet<Integer>, which needs an object per entry.
+     */
+    static class IntSet {
+        static final int EMPTY = -1;
+
+        int[] table = newTable(4);
+        int size = 0;
+
+        void add(int value) {
+            if ((size + 1) * 2 > table.length) {
+                grow();
+            }
+            int mask = table.length - 1;
+            int i = mix(value) & mask;
+            while (table[i] != EMPTY) {
+                if (table[i] == value) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+            table[i] = value;
+            size++;
+        }
+
+        void remove(int value) {
+            int mask = table.length - 1;
+            int i = mix(value) & mask;
+            while (table[i] != value) {
+                if (table[i] == EMPTY) {
+                    return;
+                }
+                i = (i + 1) & mask;
+            }
+
+            // Shift later entries back so no probe chain is broken by the gap
+            int gap = i;
+            int j = (i + 1) & mask;
+            while (table[j] != EMPTY) {
+                int home = mix(table[j]) & mask;
+                boolean canMove = (j > gap) ? (home <= gap || home > j) : (home <= gap && home > j);
+                if (canMove) {
+                    table[gap] = table[j];
+                    gap = j;
+                }
+                j = (j + 1) & mask;
+            }
+            table[gap] = EMPTY;
+            size--;
+        }
+
+        private void grow() {
+            int[] old = table;
+            table = newTable(old.length * 2);
+            size = 0;
+            for (int v : old) {
+                if (v != EMPTY) {
+                    add(v);
+                }
+            }
+        }
+
+        private static int[] newTable(int capacity) {
+            int[] t = new int[capacity];
+            java.util.Arrays.fill(t, EMPTY);
+            return t;
+        }
+
+        private static int mix(int value) {
+            int h = value * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
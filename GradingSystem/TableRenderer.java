@@ -0,0 +1,162 @@
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Writes the student table a page at a time
+ *
+ * String.format has to read its pattern every time it is called, and
+ * printing each row separately means one trip to the terminal per row.
+ * Here each row is built by hand into one reusable buffer (padding with
+ * spaces ourselves), and the whole page is written and flushed at once.
+ *
+ * Concepts covered:
+ * - Building text without String.format
+ * - Buffering output and flushing once per page
+ * - Sorting with Comparators
+ */
+class TableRenderer {
+
+    // Column widths, matching the original "%-10s %-20s %-6d ..." layout
+    static final int[] WIDTHS = { 10, 20, 6, 6, 6, 10, 12 };
+    static final String[] HEADINGS = { "ID", "Name", "Exam", "Assess", "Fees", "Status", "Certificate" };
+    static final int RULE_WIDTH = 75;
+
+    // Ways the table can be sorted
+    static final int SORT_ROSTER = 0;
+    static final int SORT_ID = 1;
+    static final int SORT_NAME = 2;
+    static final int SORT_TOTAL = 3;
+    static final int SORT_STATUS = 4;
+
+    private final Writer out;
+    private final StringBuilder buffer = new StringBuilder(8 * 1024);
+    private char[] chars = new char[8 * 1024];
+
+    TableRenderer(Writer out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes the column headings and the line under them
+     */
+    void writeHeader() throws IOException {
+        buffer.setLength(0);
+        for (int i = 0; i < HEADINGS.length; i++) {
+            if (i > 0) {
+                buffer.append(' ');
+            }
+            appendPadded(buffer, HEADINGS[i], WIDTHS[i]);
+        }
+        buffer.append('\n');
+        for (int i = 0; i < RULE_WIDTH; i++) {
+            buffer.append('-');
+        }
+        buffer.append('\n');
+        flushBuffer();
+    }
+
+    /**
+     * Writes rows[from..to) and flushes them in one go
+     */
+    void writePage(List<Student> rows, int from, int to) throws IOException {
+        buffer.setLength(0);
+        for (int i = from; i < to; i++) {
+            appendRow(buffer, rows.get(i)).append('\n');
+        }
+        flushBuffer();
+    }
+
+    private void flushBuffer() throws IOException {
+        int length = buffer.length();
+        if (length > chars.length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        buffer.getChars(0, length, chars, 0);
+        out.write(chars, 0, length);
+        out.flush();
+    }
+
+    /**
+     * Appends one table row for the student (without a newline)
+     */
+    static StringBuilder appendRow(StringBuilder sb, Student s) {
+        appendPadded(sb, s.id, WIDTHS[0]).append(' ');
+
+        // Long names are cut short so the columns stay lined up
+        int nameStart = sb.length();
+        if (s.name.length() > 18) {
+            sb.append(s.name, 0, 15).append("...");
+        } else {
+            sb.append(s.name);
+        }
+        padTo(sb, nameStart, WIDTHS[1]);
+        sb.append(' ');
+        appendPadded(sb, s.examScore, WIDTHS[2]).append(' ');
+        appendPadded(sb, s.assessmentScore, WIDTHS[3]).append(' ');
+        appendPadded(sb, s.feesPaid, WIDTHS[4]).append(' ');
+        appendPadded(sb, s.getStatus(), WIDTHS[5]).append(' ');
+        appendPadded(sb, s.getCertificate() ? "YES" : "NO", WIDTHS[6]);
+        return sb;
+    }
+
+    static StringBuilder appendPadded(StringBuilder sb, String text, int width) {
+        int start = sb.length();
+        sb.append(text);
+        return padTo(sb, start, width);
+    }
+
+    static StringBuilder appendPadded(StringBuilder sb, int value, int width) {
+        int start = sb.length();
+        sb.append(value);
+        return padTo(sb, start, width);
+    }
+
+    /**
+     * Adds spaces until everything appended since start is width long
+     */
+    private static StringBuilder padTo(StringBuilder sb, int start, int width) {
+        for (int i = sb.length() - start; i < width; i++) {
+            sb.append(' ');
+        }
+        return sb;
+    }
+
+    /**
+     * Returns the students in the requested order. The roster itself is
+     * left alone; a sorted copy is returned.
+     */
+    static List<Student> sorted(List<Student> students, int sortBy) {
+        List<Student> rows = new ArrayList<>(students);
+        Comparator<Student> byId = (a, b) -> String.CASE_INSENSITIVE_ORDER.compare(a.id, b.id);
+
+        switch (sortBy) {
+            case SORT_ID:
+                rows.sort(byId);
+                break;
+            case SORT_NAME:
+                rows.sort(Comparator.comparing((Student s) -> s.name, String.CASE_INSENSITIVE_ORDER).thenComparing(byId));
+                break;
+            case SORT_TOTAL:
+                // Highest total first
+                rows.sort(Comparator.comparingInt((Student s) -> -(s.examScore + s.assessmentScore)).thenComparing(byId));
+                break;
+            case SORT_STATUS:
+                // PASSED, then CONDONED, then FAILED
+                rows.sort(Comparator.comparingInt(TableRenderer::statusRank).thenComparing(byId));
+                break;
+            default:
+                break; // Roster order
+        }
+        return rows;
+    }
+
+    private static int statusRank(Student s) {
+        if (!s.hasPassed()) {
+            return 2;
+        }
+        return s.isCondoned() ? 1 : 0;
+    }
+}
@@ -0,0 +1,54 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * The cohort report, split over the fork/join pool against one thread
+ *
+ * This uses its own roster rather than RosterState, since the report
+ * only has something to split when the students are spread over many
+ * cohorts.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class CohortsBenchmark {
+
+    static final int COHORTS = 100;
+
+    @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+    public int size;
+
+    private Grading grading;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        grading = Grading.load();
+        grading.generateCohorts(size, COHORTS, RosterState.SEED);
+    }
+
+    @Benchmark
+    public long parallel() {
+        return grading.cohortReport(true);
+    }
+
+    @Benchmark
+    public long sequential() {
+        return grading.cohortReport(false);
+    }
+}
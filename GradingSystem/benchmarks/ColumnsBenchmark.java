@@ -0,0 +1,56 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * StudentColumns against ArrayList<Student>
+ *
+ * The statistics figures are worked out with one pass over each. The
+ * memory each one takes is measured once, when they are built, and
+ * printed before the measurements start.
+ *
+ * This uses its own students rather than RosterState, so the indexes of
+ * a full roster are not counted in the memory figures.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class ColumnsBenchmark {
+
+    @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+    public int size;
+
+    private Grading grading;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        grading = Grading.load();
+        System.out.println();
+        System.out.println("Memory for " + size + " students: " + grading.buildColumns(size, RosterState.SEED));
+    }
+
+    @Benchmark
+    public long scanList() {
+        return grading.scanList();
+    }
+
+    @Benchmark
+    public long scanColumns() {
+        return grading.scanColumns();
+    }
+}
@@ -0,0 +1,136 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+/**
+ * What the benchmarks need from the grading system
+ *
+ * GradingSystem and the classes around it live in the default package,
+ * and code in a named package cant import from there. JMH on the other
+ * hand wont run benchmark classes that are in the default package. So the
+ * benchmarks only see this interface, and GradingHooks (default package,
+ * in this folder) implements it by calling the real code.
+ *
+ * Each method does one operation the way the program does it, so a
+ * benchmark is a single interface call around the code being measured.
+ */
+public interface Grading {
+
+    /**
+     * Loads GradingHooks by name, since it cant be named in code here
+     */
+    static Grading load() {
+        try {
+            return (Grading) Class.forName("GradingHooks").getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("GradingHooks is not on the class path", e);
+        }
+    }
+
+    /**
+     * Replaces the roster with size generated students. The same seed
+     * always gives the same roster.
+     */
+    void generateRoster(int size, long seed);
+
+    /**
+     * The ID of the generated student with this number
+     */
+    String makeId(int number);
+
+    /**
+     * GradingSystem.findStudentById
+     */
+    Object findStudentById(String id);
+
+    /**
+     * The original findStudentById, which checked every student in turn
+     */
+    Object linearFind(String id);
+
+    /**
+     * The search behind searchStudent (GradingSystem.findMatches).
+     * Returns the number of matches.
+     */
+    int search(String query);
+
+    /**
+     * The figures showStatistics prints, read from the running totals.
+     * Returns them added together.
+     */
+    double statistics();
+
+    /**
+     * The same figures worked out with a pass over every student
+     */
+    double statisticsFullPass();
+
+    /**
+     * Student.toTableRow for the student at this place in the roster
+     */
+    String tableRow(int index);
+
+    /**
+     * A pass over the roster reading each students status and
+     * certificate, as listAllStudents does. With legacy, the grading
+     * rules are checked again for every student, the way the original
+     * getStatus and getCertificate worked; otherwise the stored status
+     * bits are read.
+     */
+    long listStatus(boolean legacy);
+
+    /**
+     * A pass over the roster building each table row. With legacy, with
+     * String.format and the rules checked again per row, as the original
+     * toTableRow did.
+     */
+    long listRows(boolean legacy);
+
+    /**
+     * Empties the roster and generates size students into a plain
+     * ArrayList<Student> instead, plus a StudentColumns copy of them.
+     * Returns how much heap each of the two takes.
+     */
+    String buildColumns(int size, long seed);
+
+    /**
+     * The statistics figures with one pass over the ArrayList<Student>
+     * from buildColumns, as the original showStatistics did
+     */
+    long scanList();
+
+    /**
+     * The same figures from StudentColumns.summarize
+     */
+    long scanColumns();
+
+    /**
+     * Replaces the roster with size generated students spread at random
+     * over the given number of cohorts
+     */
+    void generateCohorts(int size, int cohorts, long seed);
+
+    /**
+     * The cohort report (Cohorts.report), split over the fork/join pool,
+     * or without parallel the same report worked out one cohort after
+     * another on this thread. Returns the students counted.
+     */
+    long cohortReport(boolean parallel);
+
+    /**
+     * Saves the roster as a snapshot. Returns the bytes written.
+     */
+    long saveSnapshot(Path path) throws IOException;
+
+    /**
+     * Saves the roster in the text format. Returns the bytes written.
+     */
+    long saveText(Path path) throws IOException;
+
+    /**
+     * Empties the roster and loads it from the file, snapshot or text,
+     * the way loadStudentsFromFile does. Returns the number of students loaded.
+     */
+    int load(Path path) throws IOException;
+}
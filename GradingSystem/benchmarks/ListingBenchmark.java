@@ -0,0 +1,45 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * What listAllStudents does for every student, over the whole roster
+ *
+ * The recomputed versions check the grading rules again for each student,
+ * as getStatus, getCertificate and toTableRow originally did. The cached
+ * versions read the status bits worked out when the scores last changed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class ListingBenchmark {
+
+    @Benchmark
+    public long statusRecomputed(RosterState roster) {
+        return roster.grading.listStatus(true);
+    }
+
+    @Benchmark
+    public long statusCached(RosterState roster) {
+        return roster.grading.listStatus(false);
+    }
+
+    @Benchmark
+    public long rowsRecomputed(RosterState roster) {
+        return roster.grading.listRows(true);
+    }
+
+    @Benchmark
+    public long rowsCached(RosterState roster) {
+        return roster.grading.listRows(false);
+    }
+}
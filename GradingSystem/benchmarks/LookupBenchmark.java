@@ -0,0 +1,55 @@
+package benchmarks;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * findStudentById through the ID index, against the original loop that
+ * checked every student
+ *
+ * The IDs looked up all exist and are a mix of upper and lower case, so
+ * every call does the case insensitive matching.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class LookupBenchmark {
+
+    private String[] ids;
+    private int next = 0;
+
+    @Setup(Level.Trial)
+    public void setUp(RosterState roster) {
+        Random random = new Random(7);
+        ids = new String[1024];
+        for (int i = 0; i < ids.length; i++) {
+            String id = roster.grading.makeId(random.nextInt(roster.size));
+            ids[i] = (i % 2 == 0) ? id : id.toLowerCase(Locale.ROOT);
+        }
+    }
+
+    @Benchmark
+    public Object findStudentById(RosterState roster) {
+        return roster.grading.findStudentById(ids[next++ & 1023]);
+    }
+
+    @Benchmark
+    public Object linearScan(RosterState roster) {
+        return roster.grading.linearFind(ids[next++ & 1023]);
+    }
+}
@@ -0,0 +1,74 @@
+package benchmarks;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Saving and loading the whole roster, as a snapshot and as text
+ *
+ * Both files are written once before the measurements, so the loads
+ * always read the same data. Each load empties the roster and fills it
+ * again from the file, so the roster is the same after every call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 3, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx12g")
+public class PersistenceBenchmark {
+
+    private Path folder;
+    private Path snapshot;
+    private Path text;
+
+    @Setup(Level.Trial)
+    public void setUp(RosterState roster) throws IOException {
+        folder = Files.createTempDirectory("grading-bench");
+        snapshot = folder.resolve("roster.snap");
+        text = folder.resolve("roster.txt");
+        roster.grading.saveSnapshot(snapshot);
+        roster.grading.saveText(text);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(snapshot);
+        Files.deleteIfExists(text);
+        Files.deleteIfExists(folder);
+    }
+
+    @Benchmark
+    public long saveSnapshot(RosterState roster) throws IOException {
+        return roster.grading.saveSnapshot(snapshot);
+    }
+
+    @Benchmark
+    public long saveText(RosterState roster) throws IOException {
+        return roster.grading.saveText(text);
+    }
+
+    @Benchmark
+    public int loadSnapshot(RosterState roster) throws IOException {
+        return roster.grading.load(snapshot);
+    }
+
+    @Benchmark
+    public int loadText(RosterState roster) throws IOException {
+        return roster.grading.load(text);
+    }
+}
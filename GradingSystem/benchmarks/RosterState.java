@@ -0,0 +1,31 @@
+package benchmarks;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * A generated roster of size students, shared by every benchmark thread
+ *
+ * The roster is built once per trial (one size), so building it is not
+ * part of any measurement. 10 million students need about 10 GB of heap,
+ * which is why the benchmarks fork with -Xmx12g.
+ */
+@State(Scope.Benchmark)
+public class RosterState {
+
+    static final long SEED = 42;
+
+    @Param({ "1000", "10000", "100000", "1000000", "10000000" })
+    public int size;
+
+    public Grading grading;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        grading = Grading.load();
+        grading.generateRoster(size, SEED);
+    }
+}
@@ -0,0 +1,307 @@
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Benchmarks for the Survey and Poll Manager
+ *
+ * The first benchmark loads a saved survey whose questions have millions
+ * of responses, with readLine() and split() as loadSurvey used to, and
+ * with SurveyReader, comparing the time and the memory allocated.
+ *
+ * The second fills one question with a very large number of random
+ * ratings and times working out its statistics in three ways:
+ *
+ * - Clone and sort: the original approach. Copy every response, sort the
+ *   copy for the median, min, max and quartiles, then more passes for the
+ *   mean, mode and standard deviation.
+ * - Counting: one pass over the responses to count each rating, then
+ *   everything from the 11 or fewer counters (RatingStats).
+ * - Counts only: the question keeps just the counters (RatingCounts), so
+ *   there is no pass over the responses at all.
+ *
+ * All three must give the same figures; the benchmark checks that.
+ *
+ * Concepts covered:
+ * - Performance measurement with System.nanoTime()
+ * - Measuring how much memory an operation allocates
+ * - Sorting (O(n log n)) vs counting (O(n + scale))
+ * - Checking a faster method against a known correct one
+ *
+ * Run with:
+ *   javac *.java
+ *   java -Xmx2g RatingBenchmark              (50 million responses)
+ *   java RatingBenchmark 1000000
+ */
+public class RatingBenchmark {
+
+    static final int DEFAULT_RESPONSES = 50_000_000;
+    static final int LOAD_RESPONSES = 10_000_000;
+    static final int ROUNDS = 3;
+
+    public static void main(String[] args) {
+        int size = args.length > 0 ? Integer.parseInt(args[0].replace("_", "")) : DEFAULT_RESPONSES;
+
+        System.out.println("===========================================");
+        System.out.println("      Survey and Poll Benchmarks");
+        System.out.println("===========================================");
+
+        benchmarkLoad(Math.min(size, LOAD_RESPONSES));
+        benchmarkStatistics(size, 1, 5);
+        benchmarkStatistics(size, 0, 10);
+    }
+
+    /**
+     * Loading a survey file with two questions of size responses each
+     */
+    static void benchmarkLoad(int size) {
+        System.out.println(String.format("\n--- Loading 2 questions of %,d responses ---", size));
+        File file;
+        try {
+            file = File.createTempFile("survey", ".txt");
+            file.deleteOnExit();
+            Random random = new Random(42);
+            try (Writer out = new BufferedWriter(new FileWriter(file))) {
+                out.write("SCALE:1,5\n");
+                for (int q = 1; q <= 2; q++) {
+                    out.write("Q:Question " + q + "\nR:");
+                    for (int i = 0; i < size; i++) {
+                        if (i > 0) {
+                            out.write(',');
+                        }
+                        out.write('1' + random.nextInt(5));
+                    }
+                    out.write('\n');
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("Could not write the test file: " + e.getMessage());
+            return;
+        }
+        System.out.println(String.format("File size: %.1f MB", file.length() / (1024.0 * 1024)));
+
+        for (int round = 0; round < ROUNDS; round++) {
+            try {
+                long allocated = allocatedBytes();
+                long start = System.nanoTime();
+                long splitCheck = splitLoad(file);
+                long splitNanos = System.nanoTime() - start;
+                long splitBytes = allocatedBytes() - allocated;
+
+                allocated = allocatedBytes();
+                start = System.nanoTime();
+                long chunkCheck = chunkedLoad(file);
+                long chunkNanos = System.nanoTime() - start;
+                long chunkBytes = allocatedBytes() - allocated;
+
+                System.out.println(String.format("Round %d: split %s (%,d MB allocated), chunked %s (%,d MB allocated)%s",
+                        round + 1, formatNanos(splitNanos), splitBytes >> 20, formatNanos(chunkNanos), chunkBytes >> 20,
+                        splitCheck == chunkCheck ? "" : " (MISMATCH)"));
+            } catch (IOException e) {
+                System.out.println("Could not read the test file: " + e.getMessage());
+                return;
+            }
+        }
+        // What the chunked load allocates is almost all the response
+        // buffers doubling as they grow
+        System.out.println("(Both include growing the response buffers, which needs about "
+                + (2L * size * 4 * 3 >> 20) + " MB)");
+        file.delete();
+    }
+
+    /**
+     * The way loadSurvey used to read R: lines: the whole line as one
+     * String, split on commas, each piece trimmed and parsed. Returns the
+     * sum of the ratings, to check against chunkedLoad.
+     */
+    static long splitLoad(File file) throws IOException {
+        long sum = 0;
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.startsWith("R:")) {
+                    ResponseBuffer data = new ResponseBuffer();
+                    String dataStr = line.substring(2);
+                    if (!dataStr.isEmpty()) {
+                        for (String part : dataStr.split(",")) {
+                            data.add(Integer.parseInt(part.trim()));
+                        }
+                    }
+                    for (int i = 0; i < data.size(); i++) {
+                        sum += data.get(i);
+                    }
+                }
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * The same with SurveyReader, as loadSurvey reads files now
+     */
+    static long chunkedLoad(File file) throws IOException {
+        ArrayList<ResponseBuffer> buffers = new ArrayList<>();
+        try (InputStream in = new FileInputStream(file)) {
+            SurveyReader.read(in, new SurveyReader.Handler() {
+                @Override
+                public void textLine(String line) {
+                }
+
+                @Override
+                public ResponseStore responseLine() {
+                    ResponseBuffer data = new ResponseBuffer();
+                    buffers.add(data);
+                    return data;
+                }
+            });
+        }
+        long sum = 0;
+        for (ResponseBuffer data : buffers) {
+            for (int i = 0; i < data.size(); i++) {
+                sum += data.get(i);
+            }
+        }
+        return sum;
+    }
+
+    /**
+     * Bytes allocated so far by this thread, or 0 if the JVM cant tell us
+     */
+    static long allocatedBytes() {
+        java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        if (threads instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) threads).getCurrentThreadAllocatedBytes();
+        }
+        return 0;
+    }
+
+    /**
+     * Statistics for one question with size responses on the given scale
+     */
+    static void benchmarkStatistics(int size, int minRating, int maxRating) {
+        System.out.println(String.format("\n--- Statistics for %,d responses, scale %d to %d ---",
+                size, minRating, maxRating));
+
+        // Skewed towards the top of the scale, like most real surveys
+        Random random = new Random(42);
+        int scale = maxRating - minRating + 1;
+        ResponseBuffer buffer = new ResponseBuffer();
+        RatingCounts counts = new RatingCounts(minRating, maxRating);
+        for (int i = 0; i < size; i++) {
+            int rating = maxRating - Math.min(scale - 1, (int) (Math.abs(random.nextGaussian()) * scale / 3));
+            buffer.add(rating);
+            counts.add(rating);
+        }
+
+        int agree = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            long start = System.nanoTime();
+            String sorted = sortedStatistics(buffer, minRating, maxRating);
+            long sortNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            RatingStats fromBuffer = new RatingStats(buffer.frequency(minRating, maxRating), minRating);
+            long countNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            RatingStats fromCounts = new RatingStats(counts.frequency(minRating, maxRating), minRating);
+            long storedNanos = System.nanoTime() - start;
+
+            // Formatting the summaries is left out of the times
+            String counted = fromBuffer.toString();
+            String stored = fromCounts.toString();
+
+            boolean same = sorted.equals(counted) && sorted.equals(stored);
+            if (same) {
+                agree++;
+            }
+            System.out.println("Round " + (round + 1) + ": clone and sort " + formatNanos(sortNanos)
+                    + ", counting " + formatNanos(countNanos)
+                    + ", counts only " + formatNanos(storedNanos)
+                    + (same ? "" : " (MISMATCH)"));
+            if (!same) {
+                System.out.println("  sorted:   " + sorted);
+                System.out.println("  counted:  " + counted);
+                System.out.println("  stored:   " + stored);
+            }
+        }
+        System.out.println(new RatingStats(counts.frequency(minRating, maxRating), minRating));
+        System.out.println("(" + agree + " of " + ROUNDS + " rounds agree)");
+    }
+
+    /**
+     * The statistics the way showStatistics used to work them out: copy
+     * every response, sort the copy, and make separate passes for the
+     * mean, mode and standard deviation. Returns the same one line
+     * summary as RatingStats.toString().
+     */
+    static String sortedStatistics(ResponseBuffer buffer, int minRating, int maxRating) {
+        int[] sorted = buffer.toArray();
+        Arrays.sort(sorted);
+        int n = sorted.length;
+
+        double sum = 0;
+        for (int r : sorted) {
+            sum += r;
+        }
+        double mean = sum / n;
+
+        double median;
+        if (n % 2 == 0) {
+            median = (sorted[n / 2 - 1] + sorted[n / 2]) / 2.0;
+        } else {
+            median = sorted[n / 2];
+        }
+
+        int scaleSize = maxRating - minRating + 1;
+        long[] frequency = new long[scaleSize];
+        for (int r : sorted) {
+            frequency[r - minRating]++;
+        }
+        long maxFreq = 0;
+        int mode = minRating;
+        for (int i = 0; i < scaleSize; i++) {
+            if (frequency[i] > maxFreq) {
+                maxFreq = frequency[i];
+                mode = minRating + i;
+            }
+        }
+
+        double sumSquaredDiff = 0;
+        for (int r : sorted) {
+            sumSquaredDiff += (r - mean) * (r - mean);
+        }
+        double stdDev = Math.sqrt(sumSquaredDiff / n);
+
+        // Nearest rank quartiles, read straight from the sorted copy
+        int p25 = sorted[nearestRank(25, n) - 1];
+        int p75 = sorted[nearestRank(75, n) - 1];
+
+        return String.format("n=%d mean=%.4f median=%.1f mode=%d (%d) range=%d-%d sd=%.4f p25=%d p75=%d",
+                n, mean, median, mode, maxFreq, sorted[0], sorted[n - 1], stdDev, p25, p75);
+    }
+
+    static int nearestRank(double p, int n) {
+        return (int) Math.max(1, Math.min(n, (long) Math.ceil(p / 100.0 * n)));
+    }
+
+    static String formatNanos(double nanos) {
+        if (nanos >= 1_000_000) {
+            return String.format("%.2f ms", nanos / 1_000_000);
+        }
+        if (nanos >= 1_000) {
+            return String.format("%.2f us", nanos / 1_000);
+        }
+        return String.format("%.0f ns", nanos);
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * Stores only how many times each rating was given
+ *
+ * Instead of a list of every response, this keeps one counter per rating
+ * on the scale (a counting histogram). Adding a response is a single
+ * increment, memory stays at a few counters however many responses come
+ * in, and charts and statistics read the counters directly instead of
+ * going through every response.
+ *
+ * Concepts covered:
+ * - Counting histograms
+ * - Constant memory storage
+ */
+class RatingCounts implements ResponseStore {
+
+    final int minRating;
+    final int maxRating;
+    private final long[] counts;
+    private long total = 0;
+
+    RatingCounts(int minRating, int maxRating) {
+        this.minRating = minRating;
+        this.maxRating = maxRating;
+        this.counts = new long[maxRating - minRating + 1];
+    }
+
+    @Override
+    public void add(int rating) {
+        add(rating, 1);
+    }
+
+    /**
+     * Records the same rating several times at once
+     */
+    void add(int rating, long times) {
+        if (rating < minRating || rating > maxRating) {
+            throw new IllegalArgumentException("Rating " + rating + " is not between "
+                    + minRating + " and " + maxRating);
+        }
+        if (times < 0) {
+            throw new IllegalArgumentException("Count cannot be negative: " + times);
+        }
+        counts[rating - minRating] += times;
+        total += times;
+    }
+
+    @Override
+    public long count() {
+        return total;
+    }
+
+    @Override
+    public long[] frequency(int min, int max) {
+        long[] result = new long[max - min + 1];
+        for (int rating = Math.max(min, minRating); rating <= Math.min(max, maxRating); rating++) {
+            result[rating - min] = counts[rating - minRating];
+        }
+        return result;
+    }
+
+    @Override
+    public void clear() {
+        java.util.Arrays.fill(counts, 0);
+        total = 0;
+    }
+}
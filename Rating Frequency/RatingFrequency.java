@@ -1,10 +1,12 @@
 import java.util.Scanner;
 import java.util.ArrayList;
 import java.io.FileWriter;
-import java.io.BufferedReader;
-import java.io.FileReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
 import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Survey and Poll Manager
@@ -26,14 +28,19 @@ public class RatingFrequency {
 
     static Scanner scanner = new Scanner(System.in);
 
-    // We store multiple questions with their responses
+    // We store multiple questions with their responses. Each question has
+    // its own store of ratings that grows as responses come in.
     static ArrayList<String> questions = new ArrayList<>();
-    static ArrayList<int[]> responses = new ArrayList<>();
+    static ArrayList<ResponseStore> responses = new ArrayList<>();
 
     // Default scale is 1 to 5, but can be changed
     static int minRating = 1;
     static int maxRating = 5;
 
+    // When true, questions keep only how many times each rating was given
+    // (RatingCounts) instead of every response (ResponseBuffer)
+    static boolean countsOnly = false;
+
     public static void main(String[] args) {
         System.out.println("===========================================");
         System.out.println("       Survey and Poll Manager");
@@ -42,6 +49,13 @@ public class RatingFrequency {
         // Load any saved data
         loadSurvey("survey_data.txt");
 
+        // java RatingFrequency --ingest [--follow] file... streams responses
+        // in without the menu
+        if (args.length > 0 && args[0].equals("--ingest")) {
+            ingestCommand(args);
+            return;
+        }
+
         boolean running = true;
 
         while (running) {
@@ -75,6 +89,12 @@ public class RatingFrequency {
                     runDemo();
                     break;
                 case "9":
+                    changeStorage();
+                    break;
+                case "10":
+                    ingestResponses();
+                    break;
+                case "0":
                     System.out.println("\nGoodbye!");
                     running = false;
                     break;
@@ -96,7 +116,9 @@ public class RatingFrequency {
         System.out.println("6. Change rating scale (current: " + minRating + " to " + maxRating + ")");
         System.out.println("7. Save survey to file");
         System.out.println("8. Run demo with sample data");
-        System.out.println("9. Exit");
+        System.out.println("9. Storage mode (current: " + storageName() + ")");
+        System.out.println("10. Ingest responses from files");
+        System.out.println("0. Exit");
         System.out.println("\nQuestions: " + questions.size() + " | Scale: " + minRating + " to " + maxRating);
     }
 
@@ -114,8 +136,8 @@ public class RatingFrequency {
         }
 
         questions.add(question);
-        // Initialize empty response array for this question
-        responses.add(new int[0]);
+        // Initialize empty response store for this question
+        responses.add(newStore());
 
         System.out.println("Question added! (#" + questions.size() + ")");
         System.out.println("Now use option 2 to collect responses for it.");
@@ -134,7 +156,7 @@ public class RatingFrequency {
         System.out.println("Select a question:\n");
 
         for (int i = 0; i < questions.size(); i++) {
-            int responseCount = responses.get(i).length;
+            long responseCount = responses.get(i).count();
             System.out.println((i + 1) + ". " + questions.get(i) + " (" + responseCount + " responses)");
         }
 
@@ -156,12 +178,9 @@ public class RatingFrequency {
         System.out.println("Enter ratings (" + minRating + " to " + maxRating + "), separated by spaces.");
         System.out.println("Or enter one at a time. Type 'done' when finished.\n");
 
-        ArrayList<Integer> newResponses = new ArrayList<>();
-
-        // Add existing responses
-        for (int r : responses.get(qNum)) {
-            newResponses.add(r);
-        }
+        // New ratings go straight into the questions store, so the ones
+        // already there are never copied or boxed
+        ResponseStore buffer = responses.get(qNum);
 
         while (true) {
             System.out.print("Response: ");
@@ -177,7 +196,7 @@ public class RatingFrequency {
                 try {
                     int rating = Integer.parseInt(part);
                     if (rating >= minRating && rating <= maxRating) {
-                        newResponses.add(rating);
+                        buffer.add(rating);
                         System.out.println("  Added: " + rating);
                     } else {
                         System.out.println("  Skipped " + rating + " (out of range)");
@@ -190,14 +209,7 @@ public class RatingFrequency {
             }
         }
 
-        // Convert ArrayList to array and store
-        int[] responseArray = new int[newResponses.size()];
-        for (int i = 0; i < newResponses.size(); i++) {
-            responseArray[i] = newResponses.get(i);
-        }
-        responses.set(qNum, responseArray);
-
-        System.out.println("\nTotal responses for this question: " + responseArray.length);
+        System.out.println("\nTotal responses for this question: " + buffer.count());
     }
 
     /**
@@ -212,7 +224,7 @@ public class RatingFrequency {
         System.out.println("\n--- View Results ---");
 
         for (int i = 0; i < questions.size(); i++) {
-            int responseCount = responses.get(i).length;
+            long responseCount = responses.get(i).count();
             System.out.println((i + 1) + ". " + questions.get(i) + " (" + responseCount + " responses)");
         }
 
@@ -242,31 +254,25 @@ public class RatingFrequency {
      */
     static void showBarChart(int questionIndex) {
         String question = questions.get(questionIndex);
-        int[] data = responses.get(questionIndex);
+        ResponseStore data = responses.get(questionIndex);
 
         System.out.println("\n========================================");
         System.out.println("Q: " + question);
         System.out.println("========================================");
 
-        if (data.length == 0) {
+        if (data.isEmpty()) {
             System.out.println("No responses yet.");
             return;
         }
 
-        // Count frequency for each rating
+        // Count frequency for each rating. A RatingCounts store already
+        // has the counts, a ResponseBuffer counts them in one pass.
         int scaleSize = maxRating - minRating + 1;
-        int[] frequency = new int[scaleSize];
-
-        for (int rating : data) {
-            int index = rating - minRating;
-            if (index >= 0 && index < scaleSize) {
-                frequency[index]++;
-            }
-        }
+        long[] frequency = data.frequency(minRating, maxRating);
 
         // Find max frequency for scaling the bars
-        int maxFreq = 0;
-        for (int f : frequency) {
+        long maxFreq = 0;
+        for (long f : frequency) {
             if (f > maxFreq)
                 maxFreq = f;
         }
@@ -279,7 +285,7 @@ public class RatingFrequency {
 
         for (int i = 0; i < scaleSize; i++) {
             int rating = minRating + i;
-            int count = frequency[i];
+            long count = frequency[i];
 
             // Calculate bar length proportionally
             int barLength = 0;
@@ -288,13 +294,13 @@ public class RatingFrequency {
             }
 
             String bar = "#".repeat(barLength);
-            double percentage = (double) count / data.length * 100;
+            double percentage = (double) count / data.count() * 100;
 
             System.out.printf("   %d   |    %3d    | %-40s (%.1f%%)\n",
                     rating, count, bar, percentage);
         }
 
-        System.out.println("\nTotal responses: " + data.length);
+        System.out.println("\nTotal responses: " + data.count());
     }
 
     /**
@@ -309,7 +315,7 @@ public class RatingFrequency {
         }
 
         for (int i = 0; i < questions.size(); i++) {
-            int count = responses.get(i).length;
+            long count = responses.get(i).count();
             System.out.println((i + 1) + ". " + questions.get(i));
             System.out.println("   Responses: " + count);
         }
@@ -344,60 +350,28 @@ public class RatingFrequency {
             return;
         }
 
-        int[] data = responses.get(qNum);
+        ResponseStore store = responses.get(qNum);
 
-        if (data.length == 0) {
+        if (store.isEmpty()) {
             System.out.println("\nNo responses for this question yet.");
             return;
         }
 
         System.out.println("\n=== Statistics for: " + questions.get(qNum) + " ===\n");
 
-        // Calculate mean (average)
-        double sum = 0;
-        for (int r : data) {
-            sum += r;
-        }
-        double mean = sum / data.length;
-
-        // Calculate median (middle value when sorted)
-        int[] sorted = data.clone();
-        java.util.Arrays.sort(sorted);
-        double median;
-        if (sorted.length % 2 == 0) {
-            median = (sorted[sorted.length / 2 - 1] + sorted[sorted.length / 2]) / 2.0;
-        } else {
-            median = sorted[sorted.length / 2];
-        }
-
-        // Calculate mode (most frequent value)
-        int scaleSize = maxRating - minRating + 1;
-        int[] frequency = new int[scaleSize];
-        for (int r : data) {
-            frequency[r - minRating]++;
-        }
-
-        int maxFreq = 0;
-        int mode = minRating;
-        for (int i = 0; i < scaleSize; i++) {
-            if (frequency[i] > maxFreq) {
-                maxFreq = frequency[i];
-                mode = minRating + i;
-            }
-        }
-
-        // Calculate standard deviation
-        double sumSquaredDiff = 0;
-        for (int r : data) {
-            sumSquaredDiff += Math.pow(r - mean, 2);
-        }
-        double stdDev = Math.sqrt(sumSquaredDiff / data.length);
-
-        // Find min and max
-        int min = sorted[0];
-        int max = sorted[sorted.length - 1];
-
-        System.out.println("Total Responses: " + data.length);
+        // Everything is worked out from how often each rating was given.
+        // A ResponseBuffer counts its ratings in one pass, no sorting
+        // needed; RatingCounts already has the counts.
+        RatingStats stats = new RatingStats(store.frequency(minRating, maxRating), minRating);
+        double mean = stats.mean;
+        double median = stats.median;
+        int mode = stats.mode;
+        long maxFreq = stats.modeCount;
+        double stdDev = stats.stdDev;
+        int min = stats.min;
+        int max = stats.max;
+
+        System.out.println("Total Responses: " + stats.count);
         System.out.println();
         System.out.println("Mean (Average):   " + String.format("%.2f", mean));
         System.out.println("Median (Middle):  " + String.format("%.1f", median));
@@ -405,6 +379,8 @@ public class RatingFrequency {
         System.out.println();
         System.out.println("Standard Dev:     " + String.format("%.2f", stdDev));
         System.out.println("Range:            " + min + " to " + max);
+        System.out.println("Quartiles:        p25 " + stats.quantile(25) + ", p75 " + stats.quantile(75)
+                + " (middle half of responses)");
         System.out.println();
 
         // Interpretation
@@ -455,7 +431,7 @@ public class RatingFrequency {
 
             // Clear responses since old data wont fit new scale
             for (int i = 0; i < responses.size(); i++) {
-                responses.set(i, new int[0]);
+                responses.set(i, newStore());
             }
 
             System.out.println("Scale updated to " + minRating + " to " + maxRating);
@@ -485,9 +461,9 @@ public class RatingFrequency {
         int[] sampleResponses2 = { 5, 5, 4, 5, 3, 5, 4, 5, 5, 4, 5, 3, 4, 5, 5 };
         int[] sampleResponses3 = { 4, 4, 3, 4, 5, 3, 4, 4, 3, 5, 4, 4, 3, 4 };
 
-        responses.add(sampleResponses1);
-        responses.add(sampleResponses2);
-        responses.add(sampleResponses3);
+        responses.add(storeOf(sampleResponses1));
+        responses.add(storeOf(sampleResponses2));
+        responses.add(storeOf(sampleResponses3));
 
         System.out.println("Added 3 questions with sample responses.\n");
 
@@ -502,17 +478,35 @@ public class RatingFrequency {
         try (FileWriter writer = new FileWriter(filename)) {
             // First line is scale
             writer.write("SCALE:" + minRating + "," + maxRating + "\n");
+            if (countsOnly) {
+                writer.write("STORAGE:counts\n");
+            }
 
             // Then each question with its responses
             for (int i = 0; i < questions.size(); i++) {
                 writer.write("Q:" + questions.get(i) + "\n");
 
-                StringBuilder sb = new StringBuilder("R:");
-                int[] data = responses.get(i);
-                for (int j = 0; j < data.length; j++) {
-                    sb.append(data[j]);
-                    if (j < data.length - 1) {
-                        sb.append(",");
+                // Every response on an R: line, or one count per rating on
+                // a C: line when only the counts are kept
+                ResponseStore store = responses.get(i);
+                StringBuilder sb;
+                if (store instanceof ResponseBuffer) {
+                    ResponseBuffer data = (ResponseBuffer) store;
+                    sb = new StringBuilder("R:");
+                    for (int j = 0; j < data.size(); j++) {
+                        sb.append(data.get(j));
+                        if (j < data.size() - 1) {
+                            sb.append(",");
+                        }
+                    }
+                } else {
+                    long[] counts = store.frequency(minRating, maxRating);
+                    sb = new StringBuilder("C:");
+                    for (int j = 0; j < counts.length; j++) {
+                        sb.append(counts[j]);
+                        if (j < counts.length - 1) {
+                            sb.append(",");
+                        }
                     }
                 }
                 writer.write(sb.toString() + "\n");
@@ -533,32 +527,38 @@ public class RatingFrequency {
         if (!file.exists())
             return;
 
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            String currentQuestion = null;
-
-            while ((line = reader.readLine()) != null) {
-                if (line.startsWith("SCALE:")) {
-                    String[] parts = line.substring(6).split(",");
-                    minRating = Integer.parseInt(parts[0]);
-                    maxRating = Integer.parseInt(parts[1]);
-                } else if (line.startsWith("Q:")) {
-                    currentQuestion = line.substring(2);
-                    questions.add(currentQuestion);
-                } else if (line.startsWith("R:")) {
-                    String dataStr = line.substring(2);
-                    if (dataStr.isEmpty()) {
-                        responses.add(new int[0]);
-                    } else {
-                        String[] parts = dataStr.split(",");
-                        int[] data = new int[parts.length];
+        // SurveyReader goes through the file in chunks and puts the ratings
+        // of R: lines straight into their store, so a question with millions
+        // of responses never becomes one huge String
+        try (InputStream in = new FileInputStream(file)) {
+            SurveyReader.read(in, new SurveyReader.Handler() {
+                @Override
+                public void textLine(String line) {
+                    if (line.startsWith("SCALE:")) {
+                        String[] parts = line.substring(6).split(",");
+                        minRating = Integer.parseInt(parts[0]);
+                        maxRating = Integer.parseInt(parts[1]);
+                    } else if (line.startsWith("STORAGE:")) {
+                        countsOnly = line.substring(8).trim().equals("counts");
+                    } else if (line.startsWith("Q:")) {
+                        questions.add(line.substring(2));
+                    } else if (line.startsWith("C:")) {
+                        String[] parts = line.substring(2).split(",");
+                        ResponseStore data = newStore();
                         for (int i = 0; i < parts.length; i++) {
-                            data[i] = Integer.parseInt(parts[i].trim());
+                            addCount(data, minRating + i, Long.parseLong(parts[i].trim()));
                         }
                         responses.add(data);
                     }
                 }
-            }
+
+                @Override
+                public ResponseStore responseLine() {
+                    ResponseStore data = newStore();
+                    responses.add(data);
+                    return data;
+                }
+            });
 
             if (!questions.isEmpty()) {
                 System.out.println("Loaded " + questions.size() + " questions from " + filename);
@@ -566,10 +566,204 @@ public class RatingFrequency {
 
         } catch (IOException e) {
             // Silent fail, file might not exist yet
-        } catch (NumberFormatException e) {
+        } catch (IllegalArgumentException e) {
+            // Not a number, or a rating that is off the scale
             System.out.println("Error reading data file. Starting fresh.");
             questions.clear();
             responses.clear();
         }
     }
+
+    /**
+     * Switches between keeping every response and keeping only the counts
+     */
+    static void changeStorage() {
+        System.out.println("\n--- Storage Mode ---");
+        System.out.println("Current mode: " + storageName());
+        System.out.println();
+        System.out.println("Every response: keeps each rating in the order it was given.");
+        System.out.println("  Memory grows with the number of responses.");
+        System.out.println("Counts only: keeps how many times each rating was given.");
+        System.out.println("  Memory stays the same however many responses come in, and charts");
+        System.out.println("  and statistics take the same time for 10 or 10 million responses.");
+        System.out.println("  The order the responses came in is lost.");
+
+        boolean switchToCounts = !countsOnly;
+        System.out.print("\nSwitch to " + (switchToCounts ? "counts only" : "every response") + "? (yes/no): ");
+        if (!scanner.nextLine().trim().toLowerCase().startsWith("y")) {
+            System.out.println("Cancelled.");
+            return;
+        }
+
+        if (!switchToCounts) {
+            for (ResponseStore store : responses) {
+                if (store.count() > ResponseBuffer.MAX_CAPACITY) {
+                    System.out.println("A question has too many responses to keep each one. Staying with counts.");
+                    return;
+                }
+            }
+        }
+
+        // Convert every question, using the counts it has now
+        countsOnly = switchToCounts;
+        for (int i = 0; i < responses.size(); i++) {
+            long[] counts = responses.get(i).frequency(minRating, maxRating);
+            ResponseStore converted = newStore();
+            for (int j = 0; j < counts.length; j++) {
+                addCount(converted, minRating + j, counts[j]);
+            }
+            responses.set(i, converted);
+        }
+
+        System.out.println("Storage mode is now: " + storageName());
+        if (!countsOnly) {
+            System.out.println("(Responses are listed in rating order, since the original order was not kept.)");
+        }
+    }
+
+    static String storageName() {
+        return countsOnly ? "counts only" : "every response";
+    }
+
+    /**
+     * An empty store for one question, in the current storage mode
+     */
+    static ResponseStore newStore() {
+        if (countsOnly) {
+            return new RatingCounts(minRating, maxRating);
+        }
+        return new ResponseBuffer();
+    }
+
+    /**
+     * A store in the current storage mode holding the given ratings
+     */
+    static ResponseStore storeOf(int[] ratings) {
+        if (!countsOnly) {
+            return new ResponseBuffer(ratings);
+        }
+        ResponseStore store = newStore();
+        for (int r : ratings) {
+            store.add(r);
+        }
+        return store;
+    }
+
+    /**
+     * Records the same rating several times
+     */
+    static void addCount(ResponseStore store, int rating, long times) {
+        if (store instanceof RatingCounts) {
+            ((RatingCounts) store).add(rating, times);
+        } else {
+            for (long n = 0; n < times; n++) {
+                store.add(rating);
+            }
+        }
+    }
+
+    /**
+     * Reads responses from CSV or NDJSON files chosen in the menu
+     */
+    static void ingestResponses() {
+        if (questions.isEmpty()) {
+            System.out.println("\nNo questions yet. Add one first.");
+            return;
+        }
+        System.out.println("\n--- Ingest Responses ---");
+        System.out.println("Each line is question,rating (CSV) or {\"question\": 1, \"rating\": 4} (NDJSON).");
+        System.out.print("File names (separated by spaces): ");
+        String input = scanner.nextLine().trim();
+        if (input.isEmpty()) {
+            System.out.println("Cancelled.");
+            return;
+        }
+
+        ArrayList<String> names = new ArrayList<>();
+        for (String name : input.split("\\s+")) {
+            names.add(name);
+        }
+        if (names.contains("-")) {
+            System.out.println("Standard input can only be read from the command line (--ingest -).");
+            return;
+        }
+
+        SurveyIngest ingest = new SurveyIngest(responses, minRating, maxRating);
+        try {
+            ingest.run(names, false);
+        } catch (IOException e) {
+            System.out.println("Error reading: " + e.getMessage());
+        }
+        printIngestReport(ingest.report());
+    }
+
+    /**
+     * The --ingest command line mode. Reads the files (or - for standard
+     * input), prints the throughput and saves the survey. With --follow
+     * the files are watched for new lines until Ctrl+C, which saves the
+     * survey before exiting.
+     */
+    static void ingestCommand(String[] args) {
+        boolean follow = false;
+        ArrayList<String> names = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--follow")) {
+                follow = true;
+            } else {
+                names.add(args[i]);
+            }
+        }
+        if (names.isEmpty()) {
+            System.out.println("Usage: java RatingFrequency --ingest [--follow] file... (- for standard input)");
+            return;
+        }
+        if (names.contains("-") && names.size() > 1) {
+            System.out.println("Standard input has to be the only source.");
+            return;
+        }
+        if (questions.isEmpty()) {
+            System.out.println("No questions in survey_data.txt yet. Add them before ingesting responses.");
+            return;
+        }
+
+        SurveyIngest ingest = new SurveyIngest(responses, minRating, maxRating);
+        CountDownLatch saved = new CountDownLatch(1);
+        if (follow) {
+            System.out.println("Following " + String.join(", ", names) + " (Ctrl+C to stop and save)");
+            // Ctrl+C stops the ingest, then waits for the main thread to
+            // save what was read so far
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+                ingest.stop();
+                try {
+                    saved.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+        }
+
+        try {
+            ingest.run(names, follow);
+        } catch (IOException e) {
+            System.out.println("Error reading: " + e.getMessage());
+        }
+        printIngestReport(ingest.report());
+        saveSurvey("survey_data.txt");
+        saved.countDown();
+    }
+
+    static void printIngestReport(SurveyIngest.Report report) {
+        System.out.println("\n" + report.summary());
+        if (report.rejected > 0) {
+            System.out.println("Rejected lines were not a response, named an unknown question or had a rating"
+                    + " off the scale (first at " + report.firstRejectedFile + " line "
+                    + report.firstRejectedLine + ").");
+        }
+        for (int i = 0; i < report.perQuestion.length; i++) {
+            if (report.perQuestion[i] > 0) {
+                System.out.println(String.format("  %d. %s: +%,d (now %,d)", i + 1, questions.get(i),
+                        report.perQuestion[i], responses.get(i).count()));
+            }
+        }
+    }
 }
@@ -0,0 +1,128 @@
+/**
+ * Statistics worked out from how many times each rating was given
+ *
+ * Because every rating is one of a few values on the scale, the counts
+ * hold everything needed:
+ *
+ * - Mean: add up rating x count for each rating, divide by the total
+ * - Median: walk the counts from the lowest rating until half the
+ *   responses have been passed
+ * - Mode: the rating with the biggest count
+ * - Min and max: the first and last ratings with a count above zero
+ * - Standard deviation: the squared distance of each rating from the
+ *   mean, times its count
+ * - Quantiles such as p25 and p75: like the median, walk the counts until
+ *   that share of the responses has been passed
+ *
+ * Each of these looks at one counter per rating, so they take the same
+ * time for ten responses or ten million. For a question that stores every
+ * response, getting the counts is one pass over them (O(n + scale)),
+ * which is much cheaper than copying and sorting them all (O(n log n))
+ * and gives exactly the same answers.
+ *
+ * Concepts covered:
+ * - Statistics from a frequency table
+ * - Finding a position by running totals (cumulative counts)
+ * - Quantiles and the nearest rank method
+ */
+class RatingStats {
+
+    final long count;
+    final double mean;
+    final double median;
+    final int mode;
+    final long modeCount;
+    final int min;
+    final int max;
+    final double stdDev;
+
+    private final long[] frequency;
+    private final int minRating;
+
+    /**
+     * frequency[i] is how many times the rating minRating + i was given.
+     * There must be at least one response.
+     */
+    RatingStats(long[] frequency, int minRating) {
+        this.frequency = frequency.clone();
+        this.minRating = minRating;
+
+        long total = 0;
+        double sum = 0;
+        int lowest = -1;
+        int highest = -1;
+        int modeIndex = 0;
+        for (int i = 0; i < frequency.length; i++) {
+            long f = frequency[i];
+            if (f == 0) {
+                continue;
+            }
+            total += f;
+            sum += (double) f * (minRating + i);
+            if (lowest < 0) {
+                lowest = i;
+            }
+            highest = i;
+            if (f > frequency[modeIndex]) {
+                modeIndex = i;
+            }
+        }
+        if (total == 0) {
+            throw new IllegalArgumentException("No responses");
+        }
+        count = total;
+        mean = sum / total;
+        mode = minRating + modeIndex;
+        modeCount = frequency[modeIndex];
+        min = minRating + lowest;
+        max = minRating + highest;
+
+        // The median is the middle response, or the average of the two
+        // middle ones when the count is even (positions counted from 1)
+        int lower = minRating + indexAt(frequency, (total + 1) / 2);
+        int upper = minRating + indexAt(frequency, total / 2 + 1);
+        median = (total % 2 == 0) ? (lower + upper) / 2.0 : lower;
+
+        double squared = 0;
+        for (int i = 0; i < frequency.length; i++) {
+            double diff = minRating + i - mean;
+            squared += frequency[i] * diff * diff;
+        }
+        stdDev = Math.sqrt(squared / total);
+    }
+
+    /**
+     * The rating that p percent of responses are at or below (nearest rank
+     * method). quantile(25) is the lower quartile, quantile(75) the upper
+     * one.
+     */
+    int quantile(double p) {
+        long rank = (long) Math.ceil(p / 100.0 * count);
+        rank = Math.max(1, Math.min(count, rank));
+        return minRating + indexAt(frequency, rank);
+    }
+
+    /**
+     * Every figure on one line, handy for comparing two ways of working
+     * them out
+     */
+    @Override
+    public String toString() {
+        return String.format("n=%d mean=%.4f median=%.1f mode=%d (%d) range=%d-%d sd=%.4f p25=%d p75=%d",
+                count, mean, median, mode, modeCount, min, max, stdDev, quantile(25), quantile(75));
+    }
+
+    /**
+     * Index of the rating at a position in sorted order, counting from 1
+     */
+    static int indexAt(long[] frequency, long position) {
+        long seen = 0;
+        for (int i = 0; i < frequency.length; i++) {
+            seen += frequency[i];
+            if (seen >= position) {
+                return i;
+            }
+        }
+        return frequency.length - 1;
+    }
+}
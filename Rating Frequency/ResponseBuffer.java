@@ -0,0 +1,129 @@
+import java.util.Arrays;
+
+/**
+ * A growable list of ratings stored as plain ints
+ *
+ * ArrayList<Integer> keeps every rating as a separate Integer object
+ * (boxing), and turning it back into an int[] means copying and unboxing
+ * all of them again. This buffer keeps the ratings in an int[] that has
+ * some spare room at the end. Adding a rating just writes the next slot;
+ * only when the array is full is it copied into one twice as big.
+ *
+ * Because the size doubles each time, the copying adds up to less than
+ * two copies per rating over the whole life of the buffer, so adding n
+ * ratings costs O(n) however many were already there (amortized
+ * constant time per add).
+ *
+ * This is the ResponseStore that keeps every rating, in order. RatingCounts
+ * is the one that keeps only the counts.
+ *
+ * Concepts covered:
+ * - Primitive arrays versus boxed collections
+ * - Growing an array by doubling (amortized cost)
+ * - Keeping a size separate from the capacity
+ */
+class ResponseBuffer implements ResponseStore {
+
+    static final int INITIAL_CAPACITY = 16;
+
+    // The largest array the JVM will reliably allocate
+    static final int MAX_CAPACITY = Integer.MAX_VALUE - 8;
+
+    private int[] data;
+    private int size = 0;
+
+    ResponseBuffer() {
+        data = new int[INITIAL_CAPACITY];
+    }
+
+    /**
+     * A buffer holding a copy of the given ratings
+     */
+    ResponseBuffer(int[] ratings) {
+        data = Arrays.copyOf(ratings, Math.max(INITIAL_CAPACITY, ratings.length));
+        size = ratings.length;
+    }
+
+    /**
+     * Adds one rating to the end
+     */
+    @Override
+    public void add(int rating) {
+        if (size == data.length) {
+            grow(size + 1);
+        }
+        data[size++] = rating;
+    }
+
+    /**
+     * Adds count ratings from values, starting at from
+     */
+    void addAll(int[] values, int from, int count) {
+        if (size + count > data.length) {
+            grow(size + count);
+        }
+        System.arraycopy(values, from, data, size, count);
+        size += count;
+    }
+
+    int get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + ", size " + size);
+        }
+        return data[index];
+    }
+
+    int size() {
+        return size;
+    }
+
+    @Override
+    public long count() {
+        return size;
+    }
+
+    /**
+     * Counts each rating with one pass over the buffer. Ratings outside
+     * the scale are not counted.
+     */
+    @Override
+    public long[] frequency(int minRating, int maxRating) {
+        long[] frequency = new long[maxRating - minRating + 1];
+        for (int i = 0; i < size; i++) {
+            int index = data[i] - minRating;
+            if (index >= 0 && index < frequency.length) {
+                frequency[index]++;
+            }
+        }
+        return frequency;
+    }
+
+    /**
+     * Removes every rating and gives back the memory
+     */
+    @Override
+    public void clear() {
+        data = new int[INITIAL_CAPACITY];
+        size = 0;
+    }
+
+    /**
+     * A copy of the ratings, exactly size long
+     */
+    int[] toArray() {
+        return Arrays.copyOf(data, size);
+    }
+
+    /**
+     * Makes room for at least needed ratings, doubling the capacity so
+     * that growing stays rare
+     */
+    private void grow(int needed) {
+        if (needed < 0 || needed > MAX_CAPACITY) {
+            throw new IllegalStateException("Too many responses for one question");
+        }
+        long doubled = Math.max((long) data.length * 2, INITIAL_CAPACITY);
+        int capacity = (int) Math.min(MAX_CAPACITY, Math.max(doubled, needed));
+        data = Arrays.copyOf(data, capacity);
+    }
+}
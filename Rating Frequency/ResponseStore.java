@@ -0,0 +1,44 @@
+/**
+ * Where the ratings for one question are kept
+ *
+ * There are two ways to store them:
+ *
+ * - ResponseBuffer keeps every single rating, in the order they came in
+ * - RatingCounts keeps only how many times each rating was given
+ *
+ * Every rating is somewhere on the scale (at most 11 values), so the
+ * counts are all the charts and statistics need. Keeping just the counts
+ * uses the same small amount of memory whether a question has ten
+ * responses or ten million, at the cost of forgetting their order.
+ *
+ * Concepts covered:
+ * - Interfaces with more than one implementation
+ * - Trading detail for memory
+ */
+interface ResponseStore {
+
+    /**
+     * Records one rating. It must be on the current scale.
+     */
+    void add(int rating);
+
+    /**
+     * How many ratings have been recorded
+     */
+    long count();
+
+    default boolean isEmpty() {
+        return count() == 0;
+    }
+
+    /**
+     * How many times each rating on the scale was given.
+     * frequency[0] is the count for minRating.
+     */
+    long[] frequency(int minRating, int maxRating);
+
+    /**
+     * Forgets every rating
+     */
+    void clear();
+}
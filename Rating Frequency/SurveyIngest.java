@@ -0,0 +1,496 @@
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming ingest of responses from log files, for example poll kiosks
+ *
+ * Each line is one response, either as CSV, the question number then the
+ * rating:
+ *
+ *   2,5
+ *
+ * or as a JSON object per line (NDJSON):
+ *
+ *   {"question": 2, "rating": 5, "kiosk": "lobby"}
+ *
+ * The question is its number in the menu (starting at 1). Extra CSV
+ * columns after the rating and other JSON fields are ignored. If the first
+ * line of a file starts with a letter it is taken to be a header, such as
+ * "question,rating", and skipped.
+ *
+ * The files are read in 64 KB chunks and the numbers are decoded straight
+ * from the bytes, without making a String for each line or calling
+ * split(), so millions of lines go through without creating millions of
+ * objects. Each response is added to its questions store as soon as it
+ * is read, so the chart and statistics are always up to date.
+ *
+ * With follow turned on, the files are watched like "tail -F": when the
+ * end is reached we wait a moment and read whatever has been added since.
+ * A file that gets shorter (truncated) is read again from the start. A
+ * file that is rotated, renamed away and replaced by a new file with the
+ * same name, is read to its end and then the new file is opened and read
+ * from the start. Rotation is spotted by the file key (the inode on Linux
+ * and macOS); where the file system has none, only truncation is noticed.
+ *
+ * Lines that are not a response, name a question that does not exist or
+ * give a rating off the scale are rejected and counted.
+ *
+ * Concepts covered:
+ * - Reading a stream in fixed size chunks
+ * - Parsing numbers from bytes without creating Strings
+ * - Following files that are still being written
+ * - Measuring throughput
+ */
+class SurveyIngest {
+
+    // Bytes read at a time. Lines longer than this cant be a response and
+    // are skipped.
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    // How long to wait before looking at a followed file again
+    static final long FOLLOW_WAIT_MILLIS = 200;
+
+    // How often a followed ingest prints its progress
+    static final long PROGRESS_NANOS = 5_000_000_000L;
+
+    // Returned by the number parsers when there is no valid number
+    static final int NO_NUMBER = Integer.MIN_VALUE;
+
+    private static final byte[] QUESTION_KEY = "\"question\"".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] RATING_KEY = "\"rating\"".getBytes(StandardCharsets.US_ASCII);
+
+    /**
+     * What happened during an ingest
+     */
+    static class Report {
+        long lines = 0;
+        long accepted = 0;
+        long rejected = 0;
+        String firstRejectedFile; // Where the first rejected line was,
+        long firstRejectedLine = -1; // counting every line of that file
+        long bytes = 0;
+        long nanos = 0;
+        long[] perQuestion;
+
+        Report(int questionCount) {
+            perQuestion = new long[questionCount];
+        }
+
+        double linesPerSecond() {
+            return nanos == 0 ? 0 : lines * 1_000_000_000.0 / nanos;
+        }
+
+        double megabytesPerSecond() {
+            return nanos == 0 ? 0 : bytes * 1_000_000_000.0 / nanos / (1024 * 1024);
+        }
+
+        String summary() {
+            return String.format("%,d lines, %,d accepted, %,d rejected in %.2f s (%,.0f lines/s, %.1f MB/s)",
+                    lines, accepted, rejected, nanos / 1e9, linesPerSecond(), megabytesPerSecond());
+        }
+    }
+
+    /**
+     * One file (or stdin) being read, with the part of a line left over
+     * from the last chunk
+     */
+    private static class Source {
+        final Path path; // null for stdin
+        InputStream in;
+        FileChannel channel; // null for stdin
+        Object fileKey; // Which file path named when it was opened
+        final byte[] buffer = new byte[CHUNK_SIZE];
+        int length = 0; // Bytes in the buffer that are not parsed yet
+        boolean skipping = false; // Inside a line that was too long
+        boolean firstLine = true; // May still be a header
+        long lineNumber = 0; // Line being parsed, counting blank and header lines
+        boolean finished = false;
+
+        /**
+         * Standard input
+         */
+        Source() {
+            this.path = null;
+            this.in = System.in;
+        }
+
+        Source(Path path) throws IOException {
+            this.path = path;
+            open();
+        }
+
+        /**
+         * Opens path from the start. Used again after a rotation.
+         */
+        void open() throws IOException {
+            FileInputStream file = new FileInputStream(path.toFile());
+            fileKey = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+            in = file;
+            channel = file.getChannel();
+            length = 0;
+            skipping = false;
+            firstLine = true;
+            lineNumber = 0;
+        }
+
+        /**
+         * The file name, as shown in the report
+         */
+        String name() {
+            return path == null ? "standard input" : path.toString();
+        }
+
+        /**
+         * True if path now names a different file from the one we have
+         * open. False if it cant tell, or if nothing has replaced the file
+         * yet.
+         */
+        boolean rotated() throws IOException {
+            if (fileKey == null) {
+                return false;
+            }
+            try {
+                Object current = Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+                return current != null && !current.equals(fileKey);
+            } catch (NoSuchFileException e) {
+                return false; // Renamed away, the new one isnt there yet
+            }
+        }
+    }
+
+    private final List<ResponseStore> stores;
+    private final int minRating;
+    private final int maxRating;
+    private final Report report;
+    private volatile boolean stopped = false;
+
+    SurveyIngest(List<ResponseStore> stores, int minRating, int maxRating) {
+        this.stores = stores;
+        this.minRating = minRating;
+        this.maxRating = maxRating;
+        this.report = new Report(stores.size());
+    }
+
+    Report report() {
+        return report;
+    }
+
+    /**
+     * Asks a followed ingest to finish after the chunk it is working on
+     */
+    void stop() {
+        stopped = true;
+    }
+
+    /**
+     * Reads every file to its end ("-" means standard input). With follow
+     * on, keeps watching the files for new lines until stop() is called.
+     */
+    void run(List<String> names, boolean follow) throws IOException {
+        List<Source> sources = new ArrayList<>();
+        try {
+            for (String name : names) {
+                if (name.equals("-")) {
+                    sources.add(new Source());
+                } else {
+                    sources.add(new Source(Path.of(name)));
+                }
+            }
+
+            long start = System.nanoTime();
+            long nextProgress = start + PROGRESS_NANOS;
+            while (!stopped) {
+                boolean readSomething = false;
+                for (Source source : sources) {
+                    if (!source.finished && readChunk(source, follow)) {
+                        readSomething = true;
+                    }
+                }
+                report.nanos = System.nanoTime() - start;
+
+                if (!readSomething) {
+                    if (!follow || allFinished(sources)) {
+                        break;
+                    }
+                    if (System.nanoTime() >= nextProgress) {
+                        System.out.println("  " + report.summary());
+                        nextProgress = System.nanoTime() + PROGRESS_NANOS;
+                    }
+                    sleep(FOLLOW_WAIT_MILLIS);
+                }
+            }
+        } finally {
+            for (Source source : sources) {
+                if (source.in != System.in) {
+                    source.in.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads and parses the next chunk of a source. Returns false if there
+     * was nothing new to read.
+     */
+    private boolean readChunk(Source source, boolean follow) throws IOException {
+        if (source.channel != null && source.channel.size() < source.channel.position()) {
+            // The file was truncated: start again from the top
+            source.channel.position(0);
+            source.length = 0;
+            source.skipping = false;
+            source.firstLine = true;
+            source.lineNumber = 0;
+        }
+
+        int read = source.in.read(source.buffer, source.length, source.buffer.length - source.length);
+        if (read < 0) {
+            // Stdin only ends once; a file may still grow if we follow it
+            if (source.channel == null || !follow) {
+                finishSource(source);
+            } else if (source.rotated()) {
+                // Everything in the old file has been read: move to the new one
+                lastLine(source);
+                source.in.close();
+                source.open();
+                return true;
+            }
+            return false;
+        }
+        report.bytes += read;
+        int end = source.length + read;
+
+        // Parse every complete line in the buffer
+        int lineStart = 0;
+        for (int i = source.length; i < end; i++) {
+            if (source.buffer[i] == '\n') {
+                if (source.skipping) {
+                    source.skipping = false; // Already counted when it started
+                } else {
+                    source.lineNumber++;
+                    handleLine(source, lineStart, i);
+                }
+                lineStart = i + 1;
+            }
+        }
+
+        // Keep the unfinished line for the next chunk
+        source.length = end - lineStart;
+        if (source.length == source.buffer.length) {
+            // A whole chunk without a line break: skip to the next one
+            if (!source.skipping) {
+                source.lineNumber++;
+                report.lines++;
+                reject(source);
+                source.skipping = true;
+                source.firstLine = false;
+            }
+            source.length = 0;
+        } else if (lineStart > 0) {
+            System.arraycopy(source.buffer, lineStart, source.buffer, 0, source.length);
+        }
+        return true;
+    }
+
+    private void finishSource(Source source) {
+        lastLine(source);
+        source.finished = true;
+    }
+
+    /**
+     * At the end of a file, a last line without a line break still counts
+     */
+    private void lastLine(Source source) {
+        if (source.length > 0 && !source.skipping) {
+            source.lineNumber++;
+            handleLine(source, 0, source.length);
+        }
+        source.length = 0;
+    }
+
+    /**
+     * Parses a complete line, unless it is the header of its file
+     */
+    private void handleLine(Source source, int from, int to) {
+        if (source.firstLine) {
+            int start = skipSpaces(source.buffer, from, to);
+            if (start < to && source.buffer[start] != '\r') {
+                source.firstLine = false;
+                byte b = source.buffer[start];
+                if ((b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z')) {
+                    return; // A header like question,rating
+                }
+            }
+        }
+        parseLine(source, from, to);
+    }
+
+    private static boolean allFinished(List<Source> sources) {
+        for (Source source : sources) {
+            if (!source.finished) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Parses the line in the source's buffer[from..to) and adds the response
+     */
+    private void parseLine(Source source, int from, int to) {
+        byte[] buffer = source.buffer;
+        // Ignore a Windows line ending and trailing spaces
+        while (to > from && (buffer[to - 1] == '\r' || buffer[to - 1] == ' ')) {
+            to--;
+        }
+        int start = skipSpaces(buffer, from, to);
+        if (start == to) {
+            return; // Blank lines are not counted
+        }
+        report.lines++;
+
+        int question;
+        int rating;
+        if (buffer[start] == '{') {
+            question = jsonNumber(buffer, start, to, QUESTION_KEY);
+            rating = jsonNumber(buffer, start, to, RATING_KEY);
+        } else {
+            // question,rating[,anything else]
+            int[] pos = { start };
+            question = parseNumber(buffer, pos, to);
+            pos[0] = skipSpaces(buffer, pos[0], to);
+            if (question == NO_NUMBER || pos[0] == to || buffer[pos[0]] != ',') {
+                reject(source);
+                return;
+            }
+            pos[0] = skipSpaces(buffer, pos[0] + 1, to);
+            rating = parseNumber(buffer, pos, to);
+            pos[0] = skipSpaces(buffer, pos[0], to);
+            if (pos[0] != to && buffer[pos[0]] != ',') {
+                rating = NO_NUMBER;
+            }
+        }
+
+        if (question < 1 || question > stores.size() || rating < minRating || rating > maxRating) {
+            reject(source);
+            return;
+        }
+        try {
+            stores.get(question - 1).add(rating);
+        } catch (IllegalStateException e) {
+            // The question cant hold any more responses
+            reject(source);
+            return;
+        }
+        report.accepted++;
+        report.perQuestion[question - 1]++;
+    }
+
+    private void reject(Source source) {
+        report.rejected++;
+        if (report.firstRejectedLine < 0) {
+            report.firstRejectedFile = source.name();
+            report.firstRejectedLine = source.lineNumber;
+        }
+    }
+
+    /**
+     * Reads a whole number starting at pos[0], with an optional minus
+     * sign, and moves pos[0] past it. Returns NO_NUMBER if there are no
+     * digits or the number is too big for a rating or question.
+     */
+    static int parseNumber(byte[] buffer, int[] pos, int to) {
+        int i = pos[0];
+        boolean negative = false;
+        if (i < to && buffer[i] == '-') {
+            negative = true;
+            i++;
+        }
+        int digitsStart = i;
+        long value = 0;
+        while (i < to && buffer[i] >= '0' && buffer[i] <= '9') {
+            value = value * 10 + (buffer[i] - '0');
+            if (value > Integer.MAX_VALUE) {
+                return NO_NUMBER;
+            }
+            i++;
+        }
+        if (i == digitsStart) {
+            return NO_NUMBER;
+        }
+        pos[0] = i;
+        return (int) (negative ? -value : value);
+    }
+
+    /**
+     * The number after "key": in a JSON line, or NO_NUMBER if the key is
+     * missing or its value is not a whole number. A number in quotes is
+     * accepted too. The value must end with a comma or the closing brace,
+     * so 4.9 or 3e9 is not read as 4 or 3.
+     */
+    static int jsonNumber(byte[] buffer, int from, int to, byte[] key) {
+        int at = indexOf(buffer, from, to, key);
+        if (at < 0) {
+            return NO_NUMBER;
+        }
+        int i = skipSpaces(buffer, at + key.length, to);
+        if (i == to || buffer[i] != ':') {
+            return NO_NUMBER;
+        }
+        i = skipSpaces(buffer, i + 1, to);
+        boolean quoted = i < to && buffer[i] == '"';
+        int[] pos = { quoted ? i + 1 : i };
+        int value = parseNumber(buffer, pos, to);
+        if (value == NO_NUMBER) {
+            return NO_NUMBER;
+        }
+        i = pos[0];
+        if (quoted) {
+            if (i == to || buffer[i] != '"') {
+                return NO_NUMBER;
+            }
+            i++;
+        }
+        i = skipSpaces(buffer, i, to);
+        if (i == to || (buffer[i] != ',' && buffer[i] != '}')) {
+            return NO_NUMBER;
+        }
+        return value;
+    }
+
+    private static int indexOf(byte[] buffer, int from, int to, byte[] key) {
+        outer:
+        for (int i = from; i <= to - key.length; i++) {
+            for (int j = 0; j < key.length; j++) {
+                if (buffer[i + j] != key[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+
+    private static int skipSpaces(byte[] buffer, int i, int to) {
+        while (i < to && (buffer[i] == ' ' || buffer[i] == '\t')) {
+            i++;
+        }
+        return i;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
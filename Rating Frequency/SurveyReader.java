@@ -0,0 +1,205 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Reads a saved survey file a chunk at a time
+ *
+ * An R: line holds every response to a question, so with 10 million
+ * responses it is a 20 MB line. Reading it with readLine() and split(",")
+ * builds that whole line as a String, then an array of 10 million small
+ * Strings, before a single rating is stored.
+ *
+ * This reader goes through the file 64 KB at a time. On an R: line the
+ * digits are turned into numbers as they go past (value = value * 10 +
+ * digit) and each rating goes straight into the questions store when its
+ * comma is reached. Nothing is kept of the line itself, so the memory used
+ * while loading is the chunk plus the store, however long the line is.
+ * A number split across two chunks is no problem, since the value being
+ * built carries over.
+ *
+ * Every other line (SCALE:, Q:, C: and so on) is short, and is handed
+ * back as a String.
+ *
+ * Concepts covered:
+ * - Reading a file in fixed size chunks
+ * - Parsing with a small state machine, one byte at a time
+ * - Keeping memory proportional to the chunk, not the file
+ */
+class SurveyReader {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    /**
+     * Receives what the reader finds
+     */
+    interface Handler {
+        /**
+         * Any line that is not an R: line, without its line ending
+         */
+        void textLine(String line);
+
+        /**
+         * An R: line has started. Returns the store its ratings go into.
+         */
+        ResponseStore responseLine();
+    }
+
+    private final Handler handler;
+
+    // The text line being collected
+    private byte[] line = new byte[256];
+    private int lineLength = 0;
+    private long lineNumber = 1;
+
+    // While inside an R: line, the rating being built
+    private ResponseStore store = null;
+    private long value = 0;
+    private boolean negative = false;
+    private boolean fieldStarted = false; // Seen anything in this field
+    private boolean inNumber = false; // Seen a sign or digit in this field
+    private boolean hasDigits = false;
+    private boolean numberEnded = false; // Seen a space after the digits
+    private boolean pendingReturn = false; // A \r that may end the line
+    private int emptyFields = 0; // Empty fields not yet followed by a number
+
+    private SurveyReader(Handler handler) {
+        this.handler = handler;
+    }
+
+    /**
+     * Reads the whole stream. A rating that is not a whole number throws
+     * NumberFormatException, naming the line.
+     */
+    static void read(InputStream in, Handler handler) throws IOException {
+        SurveyReader reader = new SurveyReader(handler);
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int n;
+        while ((n = in.read(chunk)) > 0) {
+            for (int i = 0; i < n; i++) {
+                reader.accept(chunk[i]);
+            }
+        }
+        // The last line may not end with a line break
+        if (reader.store != null || reader.lineLength > 0) {
+            reader.accept((byte) '\n');
+        }
+    }
+
+    private void accept(byte b) {
+        if (store != null) {
+            acceptResponse(b);
+            return;
+        }
+        if (b == '\n') {
+            int length = lineLength;
+            if (length > 0 && line[length - 1] == '\r') {
+                length--;
+            }
+            handler.textLine(new String(line, 0, length, Charset.defaultCharset()));
+            lineLength = 0;
+            lineNumber++;
+            return;
+        }
+        if (lineLength == line.length) {
+            line = java.util.Arrays.copyOf(line, line.length * 2);
+        }
+        line[lineLength++] = b;
+
+        // "R:" at the start of a line: switch to reading ratings
+        if (lineLength == 2 && line[0] == 'R' && line[1] == ':') {
+            lineLength = 0;
+            store = handler.responseLine();
+            startField();
+            emptyFields = 0;
+        }
+    }
+
+    /**
+     * One byte of an R: line: digits, an optional sign, spaces around a
+     * number, and commas between them
+     */
+    private void acceptResponse(byte b) {
+        // A \r just before the \n is part of a Windows line ending;
+        // anywhere else it counts as a space
+        if (pendingReturn) {
+            pendingReturn = false;
+            if (b != '\n') {
+                acceptResponse((byte) ' ');
+            }
+        }
+        if (b == '\r') {
+            pendingReturn = true;
+            return;
+        }
+        if (b != ',' && b != '\n') {
+            fieldStarted = true;
+        }
+
+        if (b >= '0' && b <= '9') {
+            if (numberEnded) {
+                fail();
+            }
+            value = value * 10 + (b - '0');
+            if (value > Integer.MAX_VALUE + 1L) {
+                fail();
+            }
+            inNumber = true;
+            hasDigits = true;
+        } else if (b == '-' || b == '+') {
+            if (inNumber) {
+                fail();
+            }
+            negative = (b == '-');
+            inNumber = true;
+        } else if (b == ' ' || b == '\t') {
+            if (inNumber) {
+                numberEnded = true;
+            }
+        } else if (b == ',') {
+            endField();
+        } else if (b == '\n') {
+            // Empty fields at the very end are ignored, like split() does
+            if (fieldStarted) {
+                endField();
+            }
+            store = null;
+            lineNumber++;
+        } else {
+            fail();
+        }
+    }
+
+    /**
+     * A comma or the end of the line: store the rating just read
+     */
+    private void endField() {
+        if (!fieldStarted) {
+            emptyFields++;
+            return;
+        }
+        // Only spaces, or a number after an empty field, like "1,,2"
+        if (!hasDigits || emptyFields > 0) {
+            fail();
+        }
+        long rating = negative ? -value : value;
+        if (rating > Integer.MAX_VALUE) {
+            fail();
+        }
+        store.add((int) rating);
+        startField();
+    }
+
+    private void startField() {
+        fieldStarted = false;
+        value = 0;
+        negative = false;
+        inNumber = false;
+        hasDigits = false;
+        numberEnded = false;
+    }
+
+    private void fail() {
+        throw new NumberFormatException("Bad rating on line " + lineNumber);
+    }
+}